@@ -0,0 +1,72 @@
+package com.oldschooldb;
+
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+/**
+ * Deterministic banks for the benchmarks: mostly stackables and single items with
+ * realistic ids, plus the odd empty slot, so every run measures the same data.
+ */
+final class BankFixtures {
+    static final long ACCOUNT_HASH = 0x5f3759df12345678L;
+    static final long TIMESTAMP = 1_700_000_000_000L;
+
+    private BankFixtures() {
+    }
+
+    static Item[] bank(int slots, long seed) {
+        Random random = new Random(seed);
+        Item[] items = new Item[slots];
+        int itemId = 0;
+        for (int i = 0; i < slots; i++) {
+            if (random.nextInt(50) == 0) {
+                items[i] = new Item(-1, 0);
+                continue;
+            }
+            itemId += 1 + random.nextInt(40);
+            int quantity = random.nextInt(4) == 0 ? 1 + random.nextInt(2_000_000) : 1 + random.nextInt(30);
+            items[i] = new Item(itemId, quantity);
+        }
+        return items;
+    }
+
+    /**
+     * A copy of {@code items} with roughly {@code percent}% of the slots changed, as after a banking trip.
+     */
+    static Item[] mutate(Item[] items, int percent, long seed) {
+        Random random = new Random(seed);
+        Item[] mutated = items.clone();
+        for (int i = 0; i < mutated.length; i++) {
+            if (random.nextInt(100) >= percent) {
+                continue;
+            }
+            Item item = mutated[i];
+            mutated[i] = random.nextBoolean()
+                ? new Item(item.getId(), item.getQuantity() + 1 + random.nextInt(100))
+                : new Item(-1, 0);
+        }
+        return mutated;
+    }
+
+    /**
+     * An {@link ItemContainer} backed by {@code items}. Only the methods capture uses are answered.
+     */
+    static ItemContainer container(Item[] items) {
+        return (ItemContainer) Proxy.newProxyInstance(ItemContainer.class.getClassLoader(),
+            new Class<?>[]{ItemContainer.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getItems":
+                        return items.clone(); // RuneLite hands out a fresh array per call
+                    case "size":
+                        return items.length;
+                    case "getId":
+                        return 95; // Bank container id
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
@@ -0,0 +1,123 @@
+package com.oldschooldb;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file against a baseline and exits non-zero when any
+ * benchmark got slower, or allocates more per operation, by more than the allowed
+ * fraction. Used by the {@code jmhCompare} Gradle task so CI can gate on regressions.
+ *
+ * <pre>
+ * BenchmarkComparison &lt;baseline.json&gt; &lt;results.json&gt; [threshold, default 0.10]
+ * </pre>
+ */
+public final class BenchmarkComparison {
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+    private static final double ALLOC_SLACK_BYTES = 16; // Ignore noise on allocation-free paths
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkComparison <baseline.json> <results.json> [threshold]");
+            System.exit(2);
+        }
+        Path baselineFile = Paths.get(args[0]);
+        if (!Files.exists(baselineFile)) {
+            // Passing without a baseline would let every regression through
+            System.err.println("No baseline at " + baselineFile);
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+        Map<String, Result> baseline = read(baselineFile);
+        Map<String, Result> current = read(Paths.get(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW   %-70s %12.3f %s%n", entry.getKey(), now.score, now.unit);
+                continue;
+            }
+
+            double change = (now.score - before.score) / before.score;
+            boolean slower = change > threshold;
+            boolean allocates = now.allocBytes > before.allocBytes * (1 + threshold) + ALLOC_SLACK_BYTES;
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.printf("%-5s %-70s %12.3f -> %12.3f %s (%+.1f%%), %.0f -> %.0f B/op%n",
+                slower || allocates ? "WORSE" : "OK", entry.getKey(), before.score, now.score, now.unit,
+                change * 100, before.allocBytes, now.allocBytes);
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonArray runs = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                JsonObject primary = run.getAsJsonObject("primaryMetric");
+                Result result = new Result();
+                result.score = primary.get("score").getAsDouble();
+                result.unit = primary.get("scoreUnit").getAsString();
+                result.allocBytes = allocation(run);
+                results.put(key(run), result);
+            }
+        }
+        return results;
+    }
+
+    private static String key(JsonObject run) {
+        StringBuilder key = new StringBuilder(run.get("benchmark").getAsString());
+        key.delete(0, key.lastIndexOf(".", key.lastIndexOf(".") - 1) + 1); // Class.method
+        if (run.has("params")) {
+            Map<String, String> params = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                params.put(param.getKey(), param.getValue().getAsString());
+            }
+            key.append(params);
+        }
+        return key.toString();
+    }
+
+    private static double allocation(JsonObject run) {
+        if (!run.has("secondaryMetrics")) {
+            return 0;
+        }
+        for (Map.Entry<String, JsonElement> metric : run.getAsJsonObject("secondaryMetrics").entrySet()) {
+            // Older JMH versions prefix profiler metrics with a middle dot
+            if (metric.getKey().replace("·", "").equals(ALLOC_METRIC)) {
+                return metric.getValue().getAsJsonObject().get("score").getAsDouble();
+            }
+        }
+        return 0;
+    }
+
+    private static class Result {
+        double score;
+        String unit;
+        double allocBytes;
+    }
+}
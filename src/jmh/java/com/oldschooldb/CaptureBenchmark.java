@@ -0,0 +1,48 @@
+package com.oldschooldb;
+
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-thread cost of turning a container into something the sync pipeline can carry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptureBenchmark {
+    @Param({"100", "400", "800", "1200"})
+    int slots;
+
+    private ItemContainer container;
+
+    @Setup
+    public void setUp() {
+        container = BankFixtures.container(BankFixtures.bank(slots, 1));
+    }
+
+    @Benchmark
+    public Item[] getItems() {
+        return container.getItems();
+    }
+
+    @Benchmark
+    public int[] snapshot() {
+        return ItemSnapshot.capture(container).getData();
+    }
+}
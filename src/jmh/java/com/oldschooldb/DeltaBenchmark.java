@@ -0,0 +1,54 @@
+package com.oldschooldb;
+
+import net.runelite.api.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffing the current bank against the acknowledged baseline, as {@link BankDeltaSync} does per sync.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeltaBenchmark {
+    @Param({"100", "400", "800", "1200"})
+    int slots;
+
+    @Param({"0", "5", "50"})
+    int changedPercent;
+
+    private Map<Integer, Integer> baseline;
+    private Item[] current;
+
+    @Setup
+    public void setUp() {
+        Item[] bank = BankFixtures.bank(slots, 1);
+        baseline = BankBaseline.toQuantities(bank);
+        current = BankFixtures.mutate(bank, changedPercent, 2);
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> toQuantities() {
+        return BankBaseline.toQuantities(current);
+    }
+
+    @Benchmark
+    public BankDelta diff() {
+        return BankDelta.between(baseline, BankBaseline.toQuantities(current));
+    }
+}
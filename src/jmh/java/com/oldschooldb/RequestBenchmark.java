@@ -0,0 +1,107 @@
+package com.oldschooldb;
+
+import net.runelite.api.Item;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.oldschooldb.BankFixtures.ACCOUNT_HASH;
+import static com.oldschooldb.BankFixtures.TIMESTAMP;
+
+/**
+ * Everything from a bank change to the bytes handed to the connection, without the network:
+ * snapshot, outbox record, baseline diff, then building the request the way
+ * {@code AuthService.execute} does and writing its body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+    private static final String SERVER_URL = "https://api.oldschooldb.com";
+    private static final OldSchoolDBConfig DEFAULTS = new OldSchoolDBConfig() {
+    };
+
+    @Param({"100", "400", "800", "1200"})
+    int slots;
+
+    @Param({"false", "true"})
+    boolean binary;
+
+    private Item[] bank;
+    private Map<Integer, Integer> baseline;
+    private CompressionStats stats;
+
+    @Setup
+    public void setUp() {
+        Item[] previous = BankFixtures.bank(slots, 1);
+        baseline = BankBaseline.toQuantities(previous);
+        bank = BankFixtures.mutate(previous, 5, 2);
+        stats = new CompressionStats();
+    }
+
+    @Benchmark
+    public long fullSync() throws IOException {
+        Item[] items = roundTrip(bank);
+        RequestBody body = binary
+            ? BinaryPayloadWriter.requestBody(BinaryPayloadWriter.items(ACCOUNT_HASH, TIMESTAMP, items))
+            : SyncPayloadWriter.requestBody(SyncPayloadWriter.items(ACCOUNT_HASH, TIMESTAMP, items));
+        return send("/api/plugin/bank/sync", body, items.length);
+    }
+
+    @Benchmark
+    public long deltaSync() throws IOException {
+        Item[] items = roundTrip(bank);
+        BankDelta delta = BankDelta.between(baseline, BankBaseline.toQuantities(items));
+        RequestBody body = binary
+            ? BinaryPayloadWriter.requestBody(BinaryPayloadWriter.bankDelta(ACCOUNT_HASH, TIMESTAMP, 1, delta))
+            : SyncPayloadWriter.requestBody(SyncPayloadWriter.bankDelta(ACCOUNT_HASH, TIMESTAMP, 1, delta));
+        return send("/api/plugin/bank/delta", body, delta.size());
+    }
+
+    /**
+     * Capture into a snapshot and read back through an outbox entry, as {@link SyncPipeline} does.
+     */
+    private Item[] roundTrip(Item[] items) {
+        int[] data = ItemSnapshot.capture(BankFixtures.container(items)).getData();
+        return new OutboxEntry(1, SyncKey.of(ACCOUNT_HASH, ContainerType.BANK), TIMESTAMP, data).toItems();
+    }
+
+    private long send(String path, RequestBody body, int entries) throws IOException {
+        Request.Builder request = new Request.Builder()
+            .url(SERVER_URL + path)
+            .addHeader("Authorization", "Bearer benchmark-token")
+            .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0");
+        // Same decision as AuthService with gzip at the default threshold and no server size budget
+        CompressionCodec codec = AuthService.chooseCodec(CompressionCodec.GZIP, DEFAULTS.compressionThreshold(),
+            AuthService.estimateBytes(entries, binary), -1, false);
+        if (codec != CompressionCodec.NONE) {
+            body = new CompressedRequestBody(body, codec, stats, path);
+            request.addHeader("Content-Encoding", codec.getContentEncoding());
+        }
+
+        Request built = request.post(body).build();
+        try (BufferedSink sink = Okio.buffer(Okio.blackhole())) {
+            built.body().writeTo(sink);
+            return sink.getBuffer().size();
+        }
+    }
+}
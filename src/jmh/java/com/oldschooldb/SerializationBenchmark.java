@@ -0,0 +1,75 @@
+package com.oldschooldb;
+
+import net.runelite.api.Item;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.oldschooldb.BankFixtures.ACCOUNT_HASH;
+import static com.oldschooldb.BankFixtures.TIMESTAMP;
+
+/**
+ * Writing a full bank payload, as {@code AuthService.sendBankData} does, into a sink that
+ * discards the bytes, so only serialization (and compression) is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"100", "400", "800", "1200"})
+    int slots;
+
+    private Item[] bank;
+    private CompressionStats stats;
+
+    @Setup
+    public void setUp() {
+        bank = BankFixtures.bank(slots, 1);
+        stats = new CompressionStats();
+    }
+
+    @Benchmark
+    public void json() throws IOException {
+        write(SyncPayloadWriter.requestBody(SyncPayloadWriter.items(ACCOUNT_HASH, TIMESTAMP, bank)));
+    }
+
+    @Benchmark
+    public void binary() throws IOException {
+        write(BinaryPayloadWriter.requestBody(BinaryPayloadWriter.items(ACCOUNT_HASH, TIMESTAMP, bank)));
+    }
+
+    @Benchmark
+    public void jsonGzip() throws IOException {
+        write(new CompressedRequestBody(SyncPayloadWriter.requestBody(SyncPayloadWriter.items(ACCOUNT_HASH, TIMESTAMP, bank)),
+            CompressionCodec.GZIP, stats, "bank/sync"));
+    }
+
+    @Benchmark
+    public void binaryDeflateFast() throws IOException {
+        write(new CompressedRequestBody(BinaryPayloadWriter.requestBody(BinaryPayloadWriter.items(ACCOUNT_HASH, TIMESTAMP, bank)),
+            CompressionCodec.DEFLATE_FAST, stats, "bank/sync"));
+    }
+
+    private static void write(RequestBody body) throws IOException {
+        try (BufferedSink sink = Okio.buffer(Okio.blackhole())) {
+            body.writeTo(sink);
+        }
+    }
+}
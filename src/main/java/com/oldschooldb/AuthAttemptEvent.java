@@ -0,0 +1,21 @@
+package com.oldschooldb;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An API token verification against the backend.
+ */
+@Name("com.oldschooldb.AuthAttempt")
+@Label("Auth Attempted")
+@Category({"OldSchoolDB", "Auth"})
+@Description("Verifying the API token with the OldSchoolDB backend")
+@StackTrace(false)
+class AuthAttemptEvent extends Event {
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,16 @@
+package com.oldschooldb;
+
+/**
+ * Outcome of the {@code auth/test} handshake.
+ */
+public enum AuthResult {
+    /** The server accepted the token; its capabilities have been applied. */
+    VERIFIED,
+    /** The server refused the token with a 401 or 403. */
+    REJECTED,
+    /**
+     * No usable answer: offline, timed out, throttled, a server error or an unreadable body.
+     * Says nothing about the token.
+     */
+    UNREACHABLE
+}
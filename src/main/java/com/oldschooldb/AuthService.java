@@ -1,290 +1,836 @@
 package com.oldschooldb;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Item;
 import net.runelite.api.GrandExchangeOffer;
-import net.runelite.api.GrandExchangeOfferState;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 @Slf4j
-public class AuthService {
+public class AuthService implements SyncTransport {
+    // Rough per-entry sizes for deciding whether a streamed body is worth compressing
+    static final int PAYLOAD_OVERHEAD_BYTES = 64;
+    static final int JSON_ENTRY_BYTES = 32;
+    static final int BINARY_ENTRY_BYTES = 5;
+
+    // Banks with more items than one chunk go up as a chunked upload, when the server supports it
+    static final int CHUNK_ITEMS = 256;
+    static final int MIN_CHUNK_ITEMS = 32;
+    static final int CHUNK_PARALLELISM = 2;
+
+    private static final long CHANNEL_PING_SECONDS = 30;
+
     private final OkHttpClient client;
+    private final OkHttpClient channelClient;
     private final Gson gson;
-    private final String serverUrl;
-    private String apiToken;
+    private volatile String serverUrl;
+    private final Executor executor;
+    private final Executor bulkExecutor;
+    private final SyncMetrics metrics;
+    private final SyncBudget budget;
+    private volatile String apiToken;
+    private volatile boolean binarySupported = false;
+    private volatile boolean chunkedUploadSupported = false;
+    private final Map<Long, ChunkedBankUpload> chunkedUploads = new ConcurrentHashMap<>();
+    private volatile CompressionCodec compressionCodec = CompressionCodec.NONE;
+    private volatile int compressionThreshold = Integer.MAX_VALUE;
+    private volatile boolean compressionRejected = false;
+    private final CompressionStats compressionStats = new CompressionStats();
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private volatile BiConsumer<CircuitBreaker, CircuitBreaker.State> breakerListener;
 
-    public AuthService(String serverUrl) {
-        this.client = new OkHttpClient.Builder()
+    /**
+     * @param okHttpClient RuneLite's shared client; this service derives its own timeouts from it,
+     *                     reusing its connection pool, dispatcher and thread pools
+     * @param executor runs the handshake and {@link SyncLane#EXPEDITED} uploads
+     * @param bulkExecutor runs {@link SyncLane#BULK} uploads and the item mappings download,
+     *                     so a slow bank upload never holds the threads GE and equipment uploads use
+     */
+    public AuthService(OkHttpClient okHttpClient, String serverUrl, Executor executor, Executor bulkExecutor,
+                       SyncMetrics metrics, SyncBudget budget) {
+        this.client = okHttpClient.newBuilder()
             .connectTimeout(30, TimeUnit.SECONDS)
             .writeTimeout(60, TimeUnit.SECONDS)
             .readTimeout(60, TimeUnit.SECONDS)
             .build();
+        // Pings keep NAT and proxy mappings alive and detect a dead socket while idle
+        this.channelClient = client.newBuilder()
+            .pingInterval(CHANNEL_PING_SECONDS, TimeUnit.SECONDS)
+            .build();
         this.gson = new Gson();
         this.serverUrl = serverUrl;
+        this.executor = executor;
+        this.bulkExecutor = bulkExecutor;
+        this.metrics = metrics;
+        this.budget = budget;
     }
 
-    public CompletableFuture<Boolean> authenticateToken(String apiToken) {
+    /**
+     * The startup handshake: one request that confirms the server is reachable, verifies
+     * the token and returns the server's capabilities.
+     */
+    public CompletableFuture<AuthResult> authenticateToken(String apiToken) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                String authHeader = "Bearer " + apiToken;
-                log.info("Sending request to: {}", serverUrl + "/api/plugin/auth/test");
-                log.info("Authorization header: {}", authHeader.substring(0, Math.min(20, authHeader.length())) + "...");
-                
-                Request request = new Request.Builder()
-                    .url(serverUrl + "/api/plugin/auth/test")
-                    .get()
-                    .addHeader("Authorization", authHeader)
-                    .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
-                    .build();
+            AuthAttemptEvent event = SyncEvents.beginAuth();
+            AuthResult result = verifyToken(apiToken);
+            SyncEvents.endAuth(event, result == AuthResult.VERIFIED);
+            return result;
+        }, executor);
+    }
 
-                try (Response response = client.newCall(request).execute()) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        String responseBody = response.body().string();
+    /**
+     * Sends with {@code apiToken} before it has been verified this session, using the
+     * payload format remembered from its last verification.
+     */
+    public void useVerifiedToken(String apiToken, boolean binary) {
+        this.apiToken = apiToken;
+        binarySupported = binary;
+    }
+
+    public boolean isBinarySupported() {
+        return binarySupported;
+    }
+
+    private AuthResult verifyToken(String apiToken) {
+        try {
+            String authHeader = "Bearer " + apiToken;
+            log.info("Sending request to: {}", serverUrl + "/api/plugin/auth/test");
+            log.info("Authorization header: {}", authHeader.substring(0, Math.min(20, authHeader.length())) + "...");
+            
+            Request request = new Request.Builder()
+                .url(serverUrl + "/api/plugin/auth/test")
+                .get()
+                .addHeader("Authorization", authHeader)
+                .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
+                .build();
+
+            try (Response response = client.newCall(request).execute()) {
+                if (response.isSuccessful() && response.body() != null) {
+                    String responseBody = response.body().string();
+                    try {
                         JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
-                        
-                        if (jsonResponse.has("user")) {
+                        if (jsonResponse != null && jsonResponse.has("user")) {
                             JsonObject user = jsonResponse.getAsJsonObject("user");
                             JsonObject token = jsonResponse.getAsJsonObject("token");
-                            log.info("Successfully authenticated with OldSchoolDB - User: {}, Token: {}", 
-                                user.get("email").getAsString(), 
+                            log.info("Successfully authenticated with OldSchoolDB - User: {}, Token: {}",
+                                user.get("email").getAsString(),
                                 token.get("name").getAsString());
                             this.apiToken = apiToken; // Store the token for future requests
-                            return true;
-                        }
-                    } else {
-                        log.error("Token authentication failed with status: {}", response.code());
-                        if (response.body() != null) {
-                            log.error("Response: {}", response.body().string());
+                            binarySupported = supportsFormat(jsonResponse, BinaryPayloadWriter.FORMAT);
+                            log.info("Sync payload format: {}", binarySupported ? BinaryPayloadWriter.FORMAT : "json");
+                            chunkedUploadSupported = hasCapability(jsonResponse, "chunked_bank_upload");
+                            budget.applyLimits(jsonResponse);
+                            return AuthResult.VERIFIED;
                         }
+                    } catch (RuntimeException e) {
+                        log.debug("Unreadable auth response", e);
                     }
+                    // A 200 we cannot read says nothing about the token, e.g. a captive portal or proxy page
+                    log.error("Token authentication returned an unexpected response");
+                    return AuthResult.UNREACHABLE;
                 }
+
+                log.error("Token authentication failed with status: {}", response.code());
+                if (response.body() != null) {
+                    log.error("Response: {}", response.body().string());
+                }
+                // Only an explicit refusal means the token is bad; timeouts, throttling and errors do not
+                return response.code() == 401 || response.code() == 403 ? AuthResult.REJECTED : AuthResult.UNREACHABLE;
+            }
+        } catch (IOException e) {
+            log.error("Token authentication request failed", e);
+            return AuthResult.UNREACHABLE;
+        }
+    }
+
+    /**
+     * Opens a connection to the server in the background (DNS, TCP and TLS) so the
+     * first sync of the session does not pay for it. The response is ignored.
+     */
+    public void warmUp() {
+        String url = serverUrl;
+        executor.execute(() -> {
+            Request request = new Request.Builder()
+                .url(url + "/")
+                .head()
+                .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
+                .build();
+            long start = System.nanoTime();
+            try (Response response = client.newCall(request).execute()) {
+                log.debug("Warmed up connection to {} over {} in {}ms", url, response.protocol(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             } catch (IOException e) {
-                log.error("Token authentication request failed", e);
+                log.debug("Connection warm-up to {} failed: {}", url, e.getMessage());
             }
-            return false;
         });
     }
 
+    /**
+     * Points all further requests at {@code serverUrl}. Queued and in-flight syncs are kept
+     * and go to the new server on their next attempt; the caller must re-authenticate,
+     * since the token is verified per server.
+     */
+    public void setServerUrl(String serverUrl) {
+        if (serverUrl.equals(this.serverUrl)) {
+            return;
+        }
+        log.info("Switching OldSchoolDB server to {}", serverUrl);
+        this.serverUrl = serverUrl;
+        binarySupported = false; // Renegotiated by the next authentication
+        chunkedUploadSupported = false;
+        chunkedUploads.clear();
+        breakers.clear(); // Failures of the old server say nothing about the new one
+        budget.reset();
+        compressionRejected = false;
+        // The connection pool is RuneLite's, so idle connections to the old host are left to expire
+        warmUp();
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    /**
+     * Checks that the server answers at all with a bodiless request to {@code /api/health}.
+     * Any response below 500 counts, so backends without that route still pass.
+     */
     public CompletableFuture<Boolean> testConnection() {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 Request request = new Request.Builder()
-                    .url(serverUrl + "/api/items/mappings")
-                    .get()
+                    .url(serverUrl + "/api/health")
+                    .head()
                     .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
                     .build();
 
                 try (Response response = client.newCall(request).execute()) {
-                    boolean connected = response.isSuccessful();
-                    log.info("Server connection test: {}", connected ? "SUCCESS" : "FAILED");
+                    boolean connected = response.code() < 500;
+                    log.info("Server connection test: {} ({})", connected ? "SUCCESS" : "FAILED", response.code());
                     return connected;
                 }
             } catch (IOException e) {
                 log.error("Connection test failed", e);
                 return false;
             }
-        });
+        }, executor);
     }
 
-    public CompletableFuture<Boolean> sendBankData(Long accountHash, Item[] bankItems) {
+    /**
+     * Downloads {@code /api/items/mappings} into {@code cache} unless the server says the
+     * cached copy is still current. Completes with true if the cache changed.
+     */
+    public CompletableFuture<Boolean> refreshItemMappings(ItemMappingCache cache) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                List<Map<String, Object>> items = new ArrayList<>();
-                
-                for (Item item : bankItems) {
-                    if (item.getId() <= 0 || item.getQuantity() <= 0) {
-                        continue; // Skip empty slots
+            Request.Builder builder = new Request.Builder()
+                .url(serverUrl + "/api/items/mappings")
+                .get()
+                .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0");
+            if (cache.getEtag() != null) {
+                builder.addHeader("If-None-Match", cache.getEtag());
+            }
+            if (cache.getLastModified() != null) {
+                builder.addHeader("If-Modified-Since", cache.getLastModified());
+            }
+
+            try (Response response = client.newCall(builder.build()).execute()) {
+                if (response.code() == 304) {
+                    log.debug("Item mappings are up to date");
+                    return false;
+                }
+                if (!response.isSuccessful() || response.body() == null) {
+                    log.warn("Item mappings refresh failed with status: {}", response.code());
+                    return false;
+                }
+                int count = cache.update(response.body().charStream(),
+                    response.header("ETag"), response.header("Last-Modified"));
+                log.info("Refreshed {} item mappings", count);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Item mappings refresh failed: {}", e.getMessage());
+                return false;
+            }
+        }, bulkExecutor);
+    }
+
+    @Override
+    public CompletableFuture<BankSyncResult> sendBankData(Long accountHash, long timestamp, Item[] bankItems) {
+        if (isChunked(bankItems)) {
+            ChunkedBankUpload upload = ChunkedBankUpload.plan(accountHash, timestamp, bankItems, chunkItems(),
+                chunkedUploads.get(accountHash));
+            chunkedUploads.put(accountHash, upload);
+            if (upload.acknowledgedCount() > 0) {
+                log.debug("Resuming bank snapshot {} with {} of {} chunks already uploaded",
+                    upload.getSnapshotId(), upload.acknowledgedCount(), upload.chunkCount());
+            }
+            return sendBankChunks(upload, 1);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try (Response response = post("/api/plugin/bank/sync", SyncLane.of(ContainerType.BANK), accountHash, bankItems.length,
+                    SyncPayloadWriter.items(accountHash, timestamp, bankItems),
+                    BinaryPayloadWriter.items(accountHash, timestamp, bankItems))) {
+                if (response.isSuccessful()) {
+                    log.debug("Bank data synced successfully for account: {}", accountHash);
+                    return BankSyncResult.synced(readBankVersion(response));
+                } else {
+                    log.error("Bank sync failed with status: {}", response.code());
+                    if (response.body() != null) {
+                        log.error("Response: {}", response.body().string());
                     }
-                    
-                    Map<String, Object> itemData = new HashMap<>();
-                    itemData.put("item_id", item.getId());
-                    itemData.put("quantity", item.getQuantity());
-                    items.add(itemData);
+                    checkRejected("bank", response);
                 }
+            } catch (IOException e) {
+                logRequestFailure("Bank sync", e);
+            }
+            return BankSyncResult.failed();
+        }, bulkExecutor);
+    }
 
-                Map<String, Object> bankData = new HashMap<>();
-                bankData.put("account_hash", accountHash);
-                bankData.put("timestamp", System.currentTimeMillis());
-                bankData.put("items", items);
+    /**
+     * Whether {@link #sendBankData} would send {@code bankItems} as a {@link ChunkedBankUpload}
+     * rather than one request, so it should not be folded into a batch.
+     */
+    public boolean isChunked(Item[] bankItems) {
+        return chunkedUploadSupported && ChunkedBankUpload.countItems(bankItems) > chunkItems();
+    }
 
-                String jsonBody = gson.toJson(bankData);
-                RequestBody body = RequestBody.create(jsonBody, MediaType.get("application/json"));
+    /**
+     * Items per chunk: {@link #CHUNK_ITEMS}, or fewer if the server's bank payload budget is smaller.
+     */
+    private int chunkItems() {
+        long maxPayload = budget.maxPayloadBytes(ContainerType.BANK);
+        if (maxPayload < 0) {
+            return CHUNK_ITEMS;
+        }
+        long fits = (maxPayload - PAYLOAD_OVERHEAD_BYTES) / JSON_ENTRY_BYTES;
+        return (int) Math.max(MIN_CHUNK_ITEMS, Math.min(CHUNK_ITEMS, fits));
+    }
 
-                Request request = new Request.Builder()
-                    .url(serverUrl + "/api/plugin/bank/sync")
-                    .post(body)
-                    .addHeader("Authorization", "Bearer " + apiToken)
-                    .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
-                    .addHeader("Content-Type", "application/json")
-                    .build();
+    /**
+     * Uploads the chunks the server does not have yet, at most {@link #CHUNK_PARALLELISM} at a
+     * time, then commits the manifest. Chunks the server reports missing at commit are sent
+     * again, up to {@link RetryPolicy#MAX_ATTEMPTS} rounds. A failed upload keeps its acknowledged
+     * chunks so the next attempt with the same bank only sends the rest.
+     */
+    private CompletableFuture<BankSyncResult> sendBankChunks(ChunkedBankUpload upload, int round) {
+        Queue<Integer> missing = new ConcurrentLinkedQueue<>(upload.missingChunks());
+        AtomicBoolean failed = new AtomicBoolean();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(CHUNK_PARALLELISM, missing.size())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = uploadChunks(upload, missing, failed);
+        }
+        return CompletableFuture.allOf(workers).thenComposeAsync(done -> {
+            long accountHash = upload.getAccountHash();
+            if (!chunkedUploadSupported) {
+                chunkedUploads.remove(accountHash, upload);
+                return sendBankData(accountHash, upload.getTimestamp(), upload.getItems());
+            }
+            if (!upload.isComplete()) {
+                return CompletableFuture.completedFuture(BankSyncResult.failed());
+            }
+            BankSyncResult result = commitBankChunks(upload);
+            if (result.isSuccess()) {
+                chunkedUploads.remove(accountHash, upload);
+            } else if (!upload.isComplete() && round < RetryPolicy.MAX_ATTEMPTS) {
+                return sendBankChunks(upload, round + 1);
+            }
+            return CompletableFuture.completedFuture(result);
+        }, bulkExecutor);
+    }
 
-                try (Response response = client.newCall(request).execute()) {
-                    if (response.isSuccessful()) {
-                        log.debug("Bank data synced successfully for account: {}", accountHash);
-                        return true;
-                    } else {
-                        log.error("Bank sync failed with status: {}", response.code());
-                        if (response.body() != null) {
-                            log.error("Response: {}", response.body().string());
-                        }
+    /**
+     * Takes chunks off {@code missing} and uploads them one after another until none are left
+     * or one has failed.
+     */
+    private CompletableFuture<Void> uploadChunks(ChunkedBankUpload upload, Queue<Integer> missing, AtomicBoolean failed) {
+        Integer index = failed.get() ? null : missing.poll();
+        if (index == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            if (!sendBankChunk(upload, index)) {
+                failed.set(true);
+            }
+        }, bulkExecutor).thenCompose(done -> uploadChunks(upload, missing, failed));
+    }
+
+    private boolean sendBankChunk(ChunkedBankUpload upload, int index) {
+        try (Response response = post("/api/plugin/bank/chunk", SyncLane.of(ContainerType.BANK), upload.getAccountHash(), upload.getCounts()[index],
+                SyncPayloadWriter.bankChunk(upload, index), null)) {
+            if (response.isSuccessful()) {
+                upload.acknowledge(index);
+                return true;
+            } else if (response.code() == 404 || response.code() == 405) {
+                log.info("Server does not support chunked bank uploads (status {})", response.code());
+                chunkedUploadSupported = false;
+            } else {
+                log.error("Bank chunk {} of {} failed with status: {}", index + 1, upload.chunkCount(), response.code());
+            }
+        } catch (IOException e) {
+            logRequestFailure("Bank chunk upload", e);
+        }
+        return false;
+    }
+
+    /**
+     * Sends the manifest. A {@code 409} listing {@code missing} chunks marks them for upload again;
+     * a {@code 404}/{@code 410} means the server has dropped the snapshot, so it starts over next time.
+     */
+    private BankSyncResult commitBankChunks(ChunkedBankUpload upload) {
+        try (Response response = post("/api/plugin/bank/commit", SyncLane.of(ContainerType.BANK), upload.getAccountHash(), upload.chunkCount(),
+                SyncPayloadWriter.bankManifest(upload), null)) {
+            if (response.isSuccessful()) {
+                log.debug("Bank snapshot {} committed ({} chunks) for account: {}", upload.getSnapshotId(),
+                    upload.chunkCount(), upload.getAccountHash());
+                return BankSyncResult.synced(readBankVersion(response));
+            } else if (response.code() == 409 && response.body() != null) {
+                JsonObject jsonResponse = gson.fromJson(response.body().string(), JsonObject.class);
+                if (jsonResponse != null && jsonResponse.has("missing") && jsonResponse.get("missing").isJsonArray()) {
+                    for (JsonElement index : jsonResponse.getAsJsonArray("missing")) {
+                        upload.forget(index.getAsInt());
                     }
+                    log.debug("Bank snapshot {} is missing {} chunks", upload.getSnapshotId(),
+                        upload.chunkCount() - upload.acknowledgedCount());
                 }
-            } catch (IOException e) {
-                log.error("Bank sync request failed", e);
+            } else if (response.code() == 404 || response.code() == 410) {
+                log.info("Server dropped bank snapshot {}, starting over", upload.getSnapshotId());
+                chunkedUploads.remove(upload.getAccountHash(), upload);
+            } else {
+                log.error("Bank snapshot commit failed with status: {}", response.code());
             }
-            return false;
-        });
+        } catch (IOException | RuntimeException e) {
+            logRequestFailure("Bank snapshot commit", e);
+        }
+        return BankSyncResult.failed();
     }
 
-    public CompletableFuture<Boolean> sendInventoryData(Long accountHash, Item[] inventoryItems) {
+    @Override
+    public CompletableFuture<BankSyncResult> sendBankDelta(Long accountHash, long timestamp, long baseVersion, BankDelta delta) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                List<Map<String, Object>> items = new ArrayList<>();
-                
-                for (Item item : inventoryItems) {
-                    if (item.getId() <= 0 || item.getQuantity() <= 0) {
-                        continue; // Skip empty slots
+            try (Response response = post("/api/plugin/bank/delta", SyncLane.of(ContainerType.BANK), accountHash, delta.size(),
+                    SyncPayloadWriter.bankDelta(accountHash, timestamp, baseVersion, delta),
+                    BinaryPayloadWriter.bankDelta(accountHash, timestamp, baseVersion, delta))) {
+                if (response.isSuccessful()) {
+                    log.debug("Bank delta ({} changes) synced for account: {}", delta.size(), accountHash);
+                    return BankSyncResult.synced(readBankVersion(response));
+                } else if (response.code() == 409 || response.code() == 412) {
+                    // Server no longer has our base version; caller falls back to a full snapshot
+                    log.info("Bank delta base version {} rejected for account: {}", baseVersion, accountHash);
+                    return BankSyncResult.baseRejected();
+                } else {
+                    log.error("Bank delta sync failed with status: {}", response.code());
+                    if (response.body() != null) {
+                        log.error("Response: {}", response.body().string());
                     }
-                    
-                    Map<String, Object> itemData = new HashMap<>();
-                    itemData.put("item_id", item.getId());
-                    itemData.put("quantity", item.getQuantity());
-                    items.add(itemData);
+                    checkRejected("bank delta", response);
                 }
+            } catch (IOException e) {
+                logRequestFailure("Bank delta sync", e);
+            }
+            return BankSyncResult.failed();
+        }, bulkExecutor);
+    }
 
-                Map<String, Object> inventoryData = new HashMap<>();
-                inventoryData.put("account_hash", accountHash);
-                inventoryData.put("timestamp", System.currentTimeMillis());
-                inventoryData.put("items", items);
-
-                String jsonBody = gson.toJson(inventoryData);
-                RequestBody body = RequestBody.create(jsonBody, MediaType.get("application/json"));
-
-                Request request = new Request.Builder()
-                    .url(serverUrl + "/api/plugin/inventory/sync")
-                    .post(body)
-                    .addHeader("Authorization", "Bearer " + apiToken)
-                    .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
-                    .addHeader("Content-Type", "application/json")
-                    .build();
-
-                try (Response response = client.newCall(request).execute()) {
-                    if (response.isSuccessful()) {
-                        log.debug("Inventory data synced successfully for account: {}", accountHash);
-                        return true;
-                    } else {
-                        log.error("Inventory sync failed with status: {}", response.code());
-                        if (response.body() != null) {
-                            log.error("Response: {}", response.body().string());
-                        }
+    @Override
+    public CompletableFuture<Boolean> sendInventoryData(Long accountHash, long timestamp, Item[] inventoryItems) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Response response = post("/api/plugin/inventory/sync", SyncLane.of(ContainerType.INVENTORY), accountHash, inventoryItems.length,
+                    SyncPayloadWriter.items(accountHash, timestamp, inventoryItems),
+                    BinaryPayloadWriter.items(accountHash, timestamp, inventoryItems))) {
+                if (response.isSuccessful()) {
+                    log.debug("Inventory data synced successfully for account: {}", accountHash);
+                    return true;
+                } else {
+                    log.error("Inventory sync failed with status: {}", response.code());
+                    if (response.body() != null) {
+                        log.error("Response: {}", response.body().string());
                     }
+                    checkRejected("inventory", response);
                 }
             } catch (IOException e) {
-                log.error("Inventory sync request failed", e);
+                logRequestFailure("Inventory sync", e);
             }
             return false;
-        });
+        }, bulkExecutor);
     }
 
-    public CompletableFuture<Boolean> sendEquipmentData(Long accountHash, Item[] equipmentItems) {
+    @Override
+    public CompletableFuture<Boolean> sendEquipmentData(Long accountHash, long timestamp, Item[] equipmentItems) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                List<Map<String, Object>> items = new ArrayList<>();
-                
-                for (Item item : equipmentItems) {
-                    if (item.getId() <= 0 || item.getQuantity() <= 0) {
-                        continue; // Skip empty equipment slots
+            try (Response response = post("/api/plugin/equipment/sync", SyncLane.of(ContainerType.EQUIPMENT), accountHash, equipmentItems.length,
+                    SyncPayloadWriter.items(accountHash, timestamp, equipmentItems),
+                    BinaryPayloadWriter.items(accountHash, timestamp, equipmentItems))) {
+                if (response.isSuccessful()) {
+                    log.debug("Equipment data synced successfully for account: {}", accountHash);
+                    return true;
+                } else {
+                    log.error("Equipment sync failed with status: {}", response.code());
+                    if (response.body() != null) {
+                        log.error("Response: {}", response.body().string());
                     }
-                    
-                    Map<String, Object> itemData = new HashMap<>();
-                    itemData.put("item_id", item.getId());
-                    itemData.put("quantity", item.getQuantity());
-                    items.add(itemData);
+                    checkRejected("equipment", response);
                 }
+            } catch (IOException e) {
+                logRequestFailure("Equipment sync", e);
+            }
+            return false;
+        }, executor);
+    }
 
-                Map<String, Object> equipmentData = new HashMap<>();
-                equipmentData.put("account_hash", accountHash);
-                equipmentData.put("timestamp", System.currentTimeMillis());
-                equipmentData.put("items", items);
-
-                String jsonBody = gson.toJson(equipmentData);
-                RequestBody body = RequestBody.create(jsonBody, MediaType.get("application/json"));
-
-                Request request = new Request.Builder()
-                    .url(serverUrl + "/api/plugin/equipment/sync")
-                    .post(body)
-                    .addHeader("Authorization", "Bearer " + apiToken)
-                    .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
-                    .addHeader("Content-Type", "application/json")
-                    .build();
-
-                try (Response response = client.newCall(request).execute()) {
-                    if (response.isSuccessful()) {
-                        log.debug("Equipment data synced successfully for account: {}", accountHash);
-                        return true;
-                    } else {
-                        log.error("Equipment sync failed with status: {}", response.code());
-                        if (response.body() != null) {
-                            log.error("Response: {}", response.body().string());
-                        }
+    @Override
+    public CompletableFuture<Boolean> sendGrandExchangeOffer(Long accountHash, long timestamp, int slot, GrandExchangeOffer offer) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Response response = post("/api/plugin/ge/sync", SyncLane.of(ContainerType.GRAND_EXCHANGE), accountHash, 1,
+                    SyncPayloadWriter.grandExchangeOffer(accountHash, timestamp, slot, offer), null)) {
+                if (response.isSuccessful()) {
+                    log.debug("GE offer synced successfully for account: {}, slot: {}", accountHash, slot);
+                    return true;
+                } else {
+                    log.error("GE offer sync failed with status: {}", response.code());
+                    if (response.body() != null) {
+                        log.error("Response: {}", response.body().string());
                     }
+                    checkRejected("GE offer", response);
                 }
             } catch (IOException e) {
-                log.error("Equipment sync request failed", e);
+                logRequestFailure("GE offer sync", e);
             }
             return false;
-        });
+        }, executor);
     }
 
-    public CompletableFuture<Boolean> sendGrandExchangeOffer(Long accountHash, int slot, GrandExchangeOffer offer) {
+    public CompletableFuture<SyncBatchResult> sendBatch(SyncBatch batch) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                Map<String, Object> offerData = new HashMap<>();
-                offerData.put("account_hash", accountHash);
-                offerData.put("timestamp", System.currentTimeMillis());
-                offerData.put("slot", slot);
-                offerData.put("item_id", offer.getItemId());
-                offerData.put("quantity", offer.getTotalQuantity());
-                offerData.put("price", offer.getPrice());
-                offerData.put("spent", offer.getSpent());
-                offerData.put("state", offer.getState().name());
-                
-                String jsonBody = gson.toJson(offerData);
-                RequestBody body = RequestBody.create(jsonBody, MediaType.get("application/json"));
-
-                Request request = new Request.Builder()
-                    .url(serverUrl + "/api/plugin/ge/sync")
-                    .post(body)
-                    .addHeader("Authorization", "Bearer " + apiToken)
-                    .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
-                    .addHeader("Content-Type", "application/json")
-                    .build();
-
-                try (Response response = client.newCall(request).execute()) {
-                    if (response.isSuccessful()) {
-                        log.debug("GE offer synced successfully for account: {}, slot: {}", accountHash, slot);
-                        return true;
-                    } else {
-                        log.error("GE offer sync failed with status: {}", response.code());
-                        if (response.body() != null) {
-                            log.error("Response: {}", response.body().string());
-                        }
+            try (Response response = post("/api/plugin/sync/batch", batch.getLane(), batch.getAccountHash(), batch.entryCount(),
+                    SyncPayloadWriter.batch(batch), null)) {
+                if (response.isSuccessful() && response.body() != null) {
+                    JsonObject jsonResponse = gson.fromJson(response.body().string(), JsonObject.class);
+                    if (jsonResponse != null && jsonResponse.has("results")) {
+                        log.debug("Batch of {} sections synced for account: {}", batch.size(), batch.getAccountHash());
+                        return SyncBatchResult.ok(jsonResponse.getAsJsonObject("results"));
+                    }
+                    log.error("Batch sync response had no results");
+                } else if (response.code() == 404 || response.code() == 405) {
+                    log.info("Server does not support batch sync (status {})", response.code());
+                    return SyncBatchResult.unsupported();
+                } else {
+                    log.error("Batch sync failed with status: {}", response.code());
+                    if (response.body() != null) {
+                        log.error("Response: {}", response.body().string());
+                    }
+                    if (RetryPolicy.isRejected(response.code())) {
+                        return SyncBatchResult.rejected();
                     }
                 }
+            } catch (IOException | RuntimeException e) {
+                logRequestFailure("Batch sync", e);
+            }
+            return SyncBatchResult.failed();
+        }, batch.getLane() == SyncLane.BULK ? bulkExecutor : executor);
+    }
+
+    /**
+     * Opens the {@link SyncChannel} socket, authenticated once with the verified token.
+     * {@code channelId} stays the same across reconnects so the server can drop retransmitted
+     * messages it already applied.
+     */
+    public WebSocket openChannel(String channelId, WebSocketListener listener) {
+        Request request = new Request.Builder()
+            .url(serverUrl + SyncChannel.PATH)
+            .addHeader("Authorization", "Bearer " + apiToken)
+            .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0")
+            .addHeader("X-Sync-Channel", channelId)
+            .build();
+        return channelClient.newWebSocket(request, listener);
+    }
+
+    public void setCompression(CompressionCodec codec, int thresholdBytes) {
+        this.compressionCodec = codec;
+        this.compressionThreshold = thresholdBytes;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    public void setBreakerListener(BiConsumer<CircuitBreaker, CircuitBreaker.State> breakerListener) {
+        this.breakerListener = breakerListener;
+    }
+
+    /**
+     * Breakers that are currently open or half-open.
+     */
+    public List<CircuitBreaker> getTrippedBreakers() {
+        List<CircuitBreaker> tripped = new ArrayList<>();
+        for (CircuitBreaker breaker : breakers.values()) {
+            if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+                tripped.add(breaker);
+            }
+        }
+        return tripped;
+    }
+
+    /**
+     * POSTs a sync payload through the endpoint's circuit breaker, retrying connection failures,
+     * 5xx and 429 responses with jittered exponential backoff. Sync payloads are full snapshots
+     * (or deltas the server rejects if re-applied), so they are safe to repeat.
+     */
+    private Response post(String path, SyncLane lane, long accountHash, int entries, SyncPayloadWriter.Payload json, BinaryPayloadWriter.Payload binary) throws IOException {
+        CircuitBreaker breaker = breakers.computeIfAbsent(path, p -> new CircuitBreaker(p, (b, state) -> {
+            BiConsumer<CircuitBreaker, CircuitBreaker.State> listener = breakerListener;
+            if (listener != null) {
+                listener.accept(b, state);
+            }
+        }));
+
+        for (int attempt = 1; ; attempt++) {
+            breaker.acquire();
+
+            Response response;
+            try {
+                response = execute(path, lane, accountHash, entries, json, binary);
             } catch (IOException e) {
-                log.error("GE offer sync request failed", e);
+                breaker.recordFailure(0);
+                if (attempt >= RetryPolicy.MAX_ATTEMPTS) {
+                    metrics.recordFailure(endpoint(path));
+                    throw e;
+                }
+                metrics.recordRetry(endpoint(path));
+                long delay = RetryPolicy.delayMs(attempt);
+                log.debug("Request to {} failed ({}), retrying in {}ms", path, e.getMessage(), delay);
+                sleep(delay);
+                continue;
+            }
+
+            if (!RetryPolicy.isRetryable(response.code())) {
+                breaker.recordSuccess();
+                if (!response.isSuccessful()) {
+                    metrics.recordFailure(endpoint(path));
+                }
+                return response;
+            }
+
+            long retryAfter = RetryPolicy.parseRetryAfter(response.header("Retry-After"));
+            breaker.recordFailure(retryAfter);
+            if (attempt >= RetryPolicy.MAX_ATTEMPTS || retryAfter > RetryPolicy.MAX_DELAY_MS) {
+                metrics.recordFailure(endpoint(path));
+                return response;
+            }
+            metrics.recordRetry(endpoint(path));
+            response.close();
+            long delay = Math.max(retryAfter, RetryPolicy.delayMs(attempt));
+            log.debug("Request to {} got {}, retrying in {}ms", path, response.code(), delay);
+            sleep(delay);
+        }
+    }
+
+    /**
+     * Endpoint name used in stats, e.g. {@code bank/sync} for {@code /api/plugin/bank/sync}.
+     */
+    private static String endpoint(String path) {
+        return path.substring(path.indexOf("/plugin/") + "/plugin/".length());
+    }
+
+    /**
+     * The server's size budget for the container {@code endpoint} syncs, or -1 if none applies.
+     */
+    private long maxPayloadBytes(String endpoint) {
+        String container = endpoint.substring(0, Math.max(0, endpoint.indexOf('/')));
+        for (ContainerType type : ContainerType.values()) {
+            if (type.getPath().equals(container)) {
+                return budget.maxPayloadBytes(type);
             }
+        }
+        return -1;
+    }
+
+    /**
+     * Fails the sync for good if the server refused its payload, so it is not retried or replayed.
+     */
+    private static void checkRejected(String what, Response response) {
+        if (RetryPolicy.isRejected(response.code())) {
+            throw new CompletionException(new SyncRejectedException(what, response.code()));
+        }
+    }
+
+    private static void logRequestFailure(String what, Exception e) {
+        if (e instanceof CircuitBreaker.OpenException) {
+            // Expected while the server is unavailable; the outbox keeps the snapshot
+            log.debug("{} skipped: {}", what, e.getMessage());
+        } else {
+            log.error("{} request failed", what, e);
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * Sends a sync payload once, as binary when the server supports it and a binary form exists, else as JSON.
+     * {@code entries} is the number of items or offers in the payload, used to decide on compression
+     * before the body is written and reported with {@code accountHash} in the JFR events.
+     */
+    private Response execute(String path, SyncLane lane, long accountHash, int entries, SyncPayloadWriter.Payload json, BinaryPayloadWriter.Payload binary) throws IOException {
+        boolean useBinary = binary != null && binarySupported;
+        String endpoint = endpoint(path);
+
+        // Bodies are streamed, so compression is decided on an estimate of the uncompressed size
+        CompressionCodec codec = chooseCodec(compressionCodec, compressionThreshold, estimateBytes(entries, useBinary),
+            maxPayloadBytes(endpoint), compressionRejected);
+        boolean compressed = codec != CompressionCodec.NONE;
+
+        // When the last byte of the body went out, so the budget sees the server's time, not the upload's
+        AtomicLong bodyWritten = new AtomicLong();
+        RequestBody body = new MeteredRequestBody(useBinary
+            ? BinaryPayloadWriter.requestBody(binary)
+            : SyncPayloadWriter.requestBody(json),
+            endpoint, "raw", accountHash, entries, (bytes, nanos) -> {
+                metrics.recordSerialization(endpoint, bytes, nanos);
+                if (!compressed) {
+                    metrics.recordWireBytes(endpoint, bytes);
+                    bodyWritten.set(System.nanoTime());
+                }
+            });
+
+        Request.Builder request = new Request.Builder()
+            .url(serverUrl + path)
+            .addHeader("Authorization", "Bearer " + apiToken)
+            .addHeader("User-Agent", "OldSchoolDB-Plugin/1.0");
+
+        if (compressed) {
+            body = new MeteredRequestBody(new CompressedRequestBody(body, codec, compressionStats, endpoint),
+                endpoint, codec.getContentEncoding(), accountHash, entries, (bytes, nanos) -> {
+                    metrics.recordWireBytes(endpoint, bytes);
+                    bodyWritten.set(System.nanoTime());
+                });
+            request.addHeader("Content-Encoding", codec.getContentEncoding());
+        }
+
+        SyncRequestEvent event = SyncEvents.beginRequest();
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = client.newCall(request.post(body).build()).execute();
+        } catch (IOException e) {
+            SyncEvents.endRequest(event, endpoint, 0, useBinary, compressed, accountHash, entries);
+            budget.onResponse(lane, 0, System.nanoTime() - start);
+            throw e;
+        }
+        long end = System.nanoTime();
+        long sentAt = bodyWritten.get();
+        metrics.recordHttp(endpoint, end - start);
+        budget.onResponse(lane, response.code(), end - (sentAt != 0 ? sentAt : start));
+        budget.applyHeaders(response.header("X-Sync-Min-Interval"), response.header("X-Sync-Max-Payload"));
+        SyncEvents.endRequest(event, endpoint, response.code(), useBinary, compressed, accountHash, entries);
+        if (compressed && response.code() == 415) {
+            response.close();
+            log.info("Server rejected {} request body for {}, disabling compression", codec.getContentEncoding(), path);
+            compressionCodec = CompressionCodec.NONE;
+            compressionRejected = true;
+            return execute(path, lane, accountHash, entries, json, binary);
+        }
+        if (useBinary && response.code() == 415) {
+            // Server stopped accepting binary since it advertised it; go back to JSON for good
+            response.close();
+            log.info("Server rejected binary sync payload for {}, switching to JSON", path);
+            binarySupported = false;
+            return execute(path, lane, accountHash, entries, json, null);
+        }
+        return response;
+    }
+
+    /**
+     * Rough uncompressed size of a sync payload with {@code entries} items or offers.
+     */
+    static long estimateBytes(int entries, boolean binary) {
+        return PAYLOAD_OVERHEAD_BYTES + (long) entries * (binary ? BINARY_ENTRY_BYTES : JSON_ENTRY_BYTES);
+    }
+
+    /**
+     * Codec for a body of about {@code estimatedBytes}, or NONE to send it as is. {@code maxPayload} is the
+     * server's size budget, negative if it has none; {@code rejected} is whether it refused compressed bodies.
+     */
+    static CompressionCodec chooseCodec(CompressionCodec configured, int threshold, long estimatedBytes,
+                                        long maxPayload, boolean rejected) {
+        boolean overBudget = maxPayload >= 0 && estimatedBytes > maxPayload && !rejected;
+        if (overBudget && configured == CompressionCodec.NONE) {
+            return CompressionCodec.GZIP; // Over the server's size budget: compress even if the user turned it off
+        }
+        if (configured != CompressionCodec.NONE && (overBudget || estimatedBytes >= threshold)) {
+            return configured;
+        }
+        return CompressionCodec.NONE;
+    }
+
+    /**
+     * Whether the auth response sets {@code capabilities.<name>} to true.
+     */
+    private static boolean hasCapability(JsonObject authResponse, String name) {
+        if (!authResponse.has("capabilities") || !authResponse.get("capabilities").isJsonObject()) {
             return false;
-        });
+        }
+        JsonElement capability = authResponse.getAsJsonObject("capabilities").get(name);
+        return capability != null && capability.isJsonPrimitive() && capability.getAsBoolean();
+    }
+
+    /**
+     * Whether the auth response lists {@code format} under {@code capabilities.sync_formats}.
+     */
+    private static boolean supportsFormat(JsonObject authResponse, String format) {
+        if (!authResponse.has("capabilities") || !authResponse.get("capabilities").isJsonObject()) {
+            return false;
+        }
+        JsonObject capabilities = authResponse.getAsJsonObject("capabilities");
+        if (!capabilities.has("sync_formats") || !capabilities.get("sync_formats").isJsonArray()) {
+            return false;
+        }
+        for (JsonElement supported : capabilities.getAsJsonArray("sync_formats")) {
+            if (format.equals(supported.getAsString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Long readBankVersion(Response response) throws IOException {
+        if (response.body() == null) {
+            return null;
+        }
+        String responseBody = response.body().string();
+        if (responseBody.isEmpty()) {
+            return null;
+        }
+        try {
+            JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
+            if (jsonResponse != null && jsonResponse.has("version") && !jsonResponse.get("version").isJsonNull()) {
+                return jsonResponse.get("version").getAsLong();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Bank sync response had no readable version", e);
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
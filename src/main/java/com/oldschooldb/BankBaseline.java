@@ -0,0 +1,38 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+import net.runelite.api.Item;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The last bank snapshot the server acknowledged for an account, keyed by the
+ * version number the server returned for it. Deltas are computed against this.
+ */
+@Getter
+public class BankBaseline {
+    private final long accountHash;
+    private final long version;
+    private final Map<Integer, Integer> items;
+
+    public BankBaseline(long accountHash, long version, Map<Integer, Integer> items) {
+        this.accountHash = accountHash;
+        this.version = version;
+        this.items = items;
+    }
+
+    /**
+     * Collapses bank slots into item_id -> quantity, skipping empty slots and placeholders.
+     */
+    public static Map<Integer, Integer> toQuantities(Item[] bankItems) {
+        Map<Integer, Integer> quantities = new HashMap<>(bankItems.length * 2);
+        for (Item item : bankItems) {
+            if (item.getId() <= 0 || item.getQuantity() <= 0) {
+                continue; // Skip empty slots
+            }
+            quantities.merge(item.getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,87 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps acknowledged bank baselines on disk so the first sync after a client
+ * restart can still be sent as a delta.
+ */
+@Slf4j
+public class BankBaselineStore {
+    private static final Type QUANTITIES_TYPE = new TypeToken<Map<Integer, Integer>>() {}.getType();
+
+    private final File directory;
+    private final Gson gson;
+    private final Map<Long, BankBaseline> cache = new HashMap<>();
+
+    public BankBaselineStore(File directory, Gson gson) {
+        this.directory = directory;
+        this.gson = gson;
+    }
+
+    public synchronized BankBaseline get(long accountHash) {
+        if (cache.containsKey(accountHash)) {
+            return cache.get(accountHash);
+        }
+
+        BankBaseline baseline = null;
+        File file = fileFor(accountHash);
+        if (file.exists()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                JsonObject json = gson.fromJson(reader, JsonObject.class);
+                Map<Integer, Integer> items = gson.fromJson(json.get("items"), QUANTITIES_TYPE);
+                baseline = new BankBaseline(accountHash, json.get("version").getAsLong(), items);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Discarding unreadable bank baseline {}", file, e);
+            }
+        }
+        cache.put(accountHash, baseline);
+        return baseline;
+    }
+
+    public synchronized void put(BankBaseline baseline) {
+        cache.put(baseline.getAccountHash(), baseline);
+
+        JsonObject json = new JsonObject();
+        json.addProperty("version", baseline.getVersion());
+        json.add("items", gson.toJsonTree(baseline.getItems(), QUANTITIES_TYPE));
+
+        File file = fileFor(baseline.getAccountHash());
+        File tmp = new File(directory, file.getName() + ".tmp");
+        try {
+            Files.createDirectories(directory.toPath());
+            try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(json, writer);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to persist bank baseline for account: {}", baseline.getAccountHash(), e);
+        }
+    }
+
+    public synchronized void invalidate(long accountHash) {
+        cache.put(accountHash, null);
+        File file = fileFor(accountHash);
+        if (file.exists() && !file.delete()) {
+            log.warn("Failed to delete bank baseline {}", file);
+        }
+    }
+
+    private File fileFor(long accountHash) {
+        return new File(directory, "bank-baseline-" + Long.toUnsignedString(accountHash) + ".json");
+    }
+}
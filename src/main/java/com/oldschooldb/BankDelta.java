@@ -0,0 +1,44 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item-level difference between an acknowledged bank baseline and the current bank.
+ */
+@Getter
+public class BankDelta {
+    private final Map<Integer, Integer> added = new LinkedHashMap<>();
+    private final Map<Integer, Integer> changed = new LinkedHashMap<>();
+    private final List<Integer> removed = new ArrayList<>();
+
+    public static BankDelta between(Map<Integer, Integer> base, Map<Integer, Integer> current) {
+        BankDelta delta = new BankDelta();
+        for (Map.Entry<Integer, Integer> entry : current.entrySet()) {
+            Integer previous = base.get(entry.getKey());
+            if (previous == null) {
+                delta.added.put(entry.getKey(), entry.getValue());
+            } else if (!previous.equals(entry.getValue())) {
+                delta.changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Integer itemId : base.keySet()) {
+            if (!current.containsKey(itemId)) {
+                delta.removed.add(itemId);
+            }
+        }
+        return delta;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    public int size() {
+        return added.size() + changed.size() + removed.size();
+    }
+}
@@ -0,0 +1,69 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Item;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends bank changes as deltas against the last server-acknowledged baseline,
+ * falling back to a full snapshot when there is no baseline or the server
+ * rejects the one we have.
+ */
+@Slf4j
+public class BankDeltaSync {
+    private final SyncTransport transport;
+    private final BankBaselineStore baselineStore;
+
+    public BankDeltaSync(SyncTransport transport, BankBaselineStore baselineStore) {
+        this.transport = transport;
+        this.baselineStore = baselineStore;
+    }
+
+    /**
+     * @param timestamp when {@code bankItems} was captured
+     */
+    public CompletableFuture<Boolean> sync(long accountHash, long timestamp, Item[] bankItems) {
+        Map<Integer, Integer> current = BankBaseline.toQuantities(bankItems);
+        BankBaseline baseline = baselineStore.get(accountHash);
+
+        if (baseline == null) {
+            return sendFull(accountHash, timestamp, bankItems, current);
+        }
+
+        BankDelta delta = BankDelta.between(baseline.getItems(), current);
+        if (delta.isEmpty()) {
+            log.debug("Bank unchanged since version {} for account: {}", baseline.getVersion(), accountHash);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return transport.sendBankDelta(accountHash, timestamp, baseline.getVersion(), delta)
+            .thenCompose(result -> {
+                if (result.getStatus() == BankSyncResult.Status.BASE_REJECTED) {
+                    baselineStore.invalidate(accountHash);
+                    return sendFull(accountHash, timestamp, bankItems, current);
+                }
+                return CompletableFuture.completedFuture(accept(accountHash, result, current));
+            });
+    }
+
+    private CompletableFuture<Boolean> sendFull(long accountHash, long timestamp, Item[] bankItems,
+                                                Map<Integer, Integer> current) {
+        return transport.sendBankData(accountHash, timestamp, bankItems)
+            .thenApply(result -> accept(accountHash, result, current));
+    }
+
+    private boolean accept(long accountHash, BankSyncResult result, Map<Integer, Integer> current) {
+        if (!result.isSuccess()) {
+            return false;
+        }
+        if (result.getVersion() != null) {
+            baselineStore.put(new BankBaseline(accountHash, result.getVersion(), current));
+        } else {
+            // Server does not version banks; keep sending full snapshots
+            baselineStore.invalidate(accountHash);
+        }
+        return true;
+    }
+}
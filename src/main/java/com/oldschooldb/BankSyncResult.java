@@ -0,0 +1,35 @@
+package com.oldschooldb;
+
+import lombok.Value;
+
+/**
+ * Outcome of a bank upload. {@code version} is the baseline version the server
+ * assigned to the resulting bank state, or null if the server did not return one.
+ */
+@Value
+public class BankSyncResult {
+    public enum Status {
+        SYNCED,
+        BASE_REJECTED,
+        FAILED
+    }
+
+    Status status;
+    Long version;
+
+    public static BankSyncResult synced(Long version) {
+        return new BankSyncResult(Status.SYNCED, version);
+    }
+
+    public static BankSyncResult baseRejected() {
+        return new BankSyncResult(Status.BASE_REJECTED, null);
+    }
+
+    public static BankSyncResult failed() {
+        return new BankSyncResult(Status.FAILED, null);
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SYNCED;
+    }
+}
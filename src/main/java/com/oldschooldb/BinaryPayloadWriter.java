@@ -0,0 +1,143 @@
+package com.oldschooldb;
+
+import net.runelite.api.Item;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for item payloads, used instead of JSON when the server
+ * advertises {@link #FORMAT} support.
+ *
+ * <pre>
+ * header:   u8 schema version, u8 kind, i64 account_hash (big-endian), varint timestamp
+ * items:    varint count, then per item (sorted by id): varint id delta, varint quantity
+ * delta:    varint base_version, items added, items changed, varint count + id deltas removed
+ * </pre>
+ *
+ * Varints are unsigned LEB128. Item ids are sorted so each id is written as the
+ * difference from the previous one, which keeps nearly all of them to one byte.
+ */
+public final class BinaryPayloadWriter {
+    public static final String FORMAT = "binary-v1";
+    public static final MediaType MEDIA_TYPE = MediaType.get("application/vnd.oldschooldb.sync+binary; version=1");
+
+    static final int SCHEMA_VERSION = 1;
+    static final int KIND_ITEMS = 1;
+    static final int KIND_BANK_DELTA = 2;
+
+    @FunctionalInterface
+    public interface Payload {
+        void write(BufferedSink sink) throws IOException;
+    }
+
+    private BinaryPayloadWriter() {
+    }
+
+    public static RequestBody requestBody(Payload payload) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return MEDIA_TYPE;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                payload.write(sink);
+            }
+        };
+    }
+
+    /**
+     * @param timestamp when {@code items} was captured
+     */
+    public static Payload items(long accountHash, long timestamp, Item[] items) {
+        return sink -> {
+            writeHeader(sink, KIND_ITEMS, accountHash, timestamp);
+            writeItems(sink, items);
+        };
+    }
+
+    public static Payload bankDelta(long accountHash, long timestamp, long baseVersion, BankDelta delta) {
+        return sink -> {
+            writeHeader(sink, KIND_BANK_DELTA, accountHash, timestamp);
+            writeVarLong(sink, baseVersion);
+            writeQuantities(sink, delta.getAdded());
+            writeQuantities(sink, delta.getChanged());
+
+            int[] removed = new int[delta.getRemoved().size()];
+            for (int i = 0; i < removed.length; i++) {
+                removed[i] = delta.getRemoved().get(i);
+            }
+            Arrays.sort(removed);
+            writeVarInt(sink, removed.length);
+            int previous = 0;
+            for (int itemId : removed) {
+                writeVarInt(sink, itemId - previous);
+                previous = itemId;
+            }
+        };
+    }
+
+    private static void writeHeader(BufferedSink sink, int kind, long accountHash, long timestamp) throws IOException {
+        sink.writeByte(SCHEMA_VERSION);
+        sink.writeByte(kind);
+        sink.writeLong(accountHash);
+        writeVarLong(sink, timestamp);
+    }
+
+    private static void writeItems(BufferedSink sink, Item[] items) throws IOException {
+        // Pack id << 32 | quantity so a single primitive sort orders by id
+        long[] packed = new long[items.length];
+        int count = 0;
+        for (Item item : items) {
+            if (item.getId() <= 0 || item.getQuantity() <= 0) {
+                continue; // Skip empty slots
+            }
+            packed[count++] = ((long) item.getId() << 32) | item.getQuantity();
+        }
+        Arrays.sort(packed, 0, count);
+        writePacked(sink, packed, count);
+    }
+
+    private static void writeQuantities(BufferedSink sink, Map<Integer, Integer> quantities) throws IOException {
+        long[] packed = new long[quantities.size()];
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            packed[count++] = ((long) entry.getKey() << 32) | entry.getValue();
+        }
+        Arrays.sort(packed, 0, count);
+        writePacked(sink, packed, count);
+    }
+
+    private static void writePacked(BufferedSink sink, long[] packed, int count) throws IOException {
+        writeVarInt(sink, count);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int itemId = (int) (packed[i] >>> 32);
+            writeVarInt(sink, itemId - previous);
+            writeVarInt(sink, (int) packed[i]);
+            previous = itemId;
+        }
+    }
+
+    static void writeVarInt(BufferedSink sink, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            sink.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        sink.writeByte(value);
+    }
+
+    static void writeVarLong(BufferedSink sink, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            sink.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        sink.writeByte((int) value);
+    }
+}
@@ -0,0 +1,166 @@
+package com.oldschooldb;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import net.runelite.api.Item;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A full bank snapshot split into chunks of at most {@code chunkItems} items, uploaded
+ * separately under one snapshot id and applied by the server only when a manifest listing
+ * every chunk is committed. Chunks are slot ranges of the original container, so each
+ * body is written straight from it and nothing larger than one chunk is ever buffered.
+ *
+ * A chunk's checksum is the CRC-32 of its items in slot order, each written as a big-endian
+ * {@code int} item id followed by a big-endian {@code int} quantity, skipping empty slots.
+ *
+ * If an upload fails, the next one for the same account with identical contents reuses the
+ * snapshot id and skips the chunks the server already acknowledged.
+ */
+@Getter
+public class ChunkedBankUpload {
+    private final long accountHash;
+    private final long timestamp;
+    private final String snapshotId;
+    private final Item[] items;
+    private final int chunkItems;
+    private final int itemCount;
+    private final int[] starts; // First slot of each chunk, then the container size
+    private final int[] counts;
+    private final int[] checksums;
+    private final long fingerprint;
+    @Getter(AccessLevel.NONE)
+    private final BitSet acknowledged;
+
+    private ChunkedBankUpload(long accountHash, long timestamp, String snapshotId, Item[] items, int chunkItems,
+                              int itemCount, int[] starts, int[] counts, int[] checksums, long fingerprint,
+                              BitSet acknowledged) {
+        this.accountHash = accountHash;
+        this.timestamp = timestamp;
+        this.snapshotId = snapshotId;
+        this.items = items;
+        this.chunkItems = chunkItems;
+        this.itemCount = itemCount;
+        this.starts = starts;
+        this.counts = counts;
+        this.checksums = checksums;
+        this.fingerprint = fingerprint;
+        this.acknowledged = acknowledged;
+    }
+
+    /**
+     * Non-empty slots in {@code items}, the number a chunked upload would send.
+     */
+    public static int countItems(Item[] items) {
+        int count = 0;
+        for (Item item : items) {
+            if (isPresent(item)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Splits {@code items} into chunks. If {@code previous} was an unfinished upload of the same
+     * snapshot, split the same way, its snapshot id and acknowledged chunks carry over.
+     *
+     * @param timestamp when {@code items} was captured, sent with the manifest
+     */
+    public static ChunkedBankUpload plan(long accountHash, long timestamp, Item[] items, int chunkItems,
+                                         ChunkedBankUpload previous) {
+        int itemCount = countItems(items);
+        int chunks = Math.max(1, (itemCount + chunkItems - 1) / chunkItems);
+        int[] starts = new int[chunks + 1];
+        int[] counts = new int[chunks];
+        int[] checksums = new int[chunks];
+
+        CRC32 whole = new CRC32();
+        CRC32 chunk = new CRC32();
+        byte[] entry = new byte[8];
+        int index = 0;
+        for (int slot = 0; slot < items.length; slot++) {
+            Item item = items[slot];
+            if (!isPresent(item)) {
+                continue;
+            }
+            if (counts[index] == chunkItems) {
+                checksums[index] = (int) chunk.getValue();
+                chunk.reset();
+                starts[++index] = slot;
+            }
+            putInt(entry, 0, item.getId());
+            putInt(entry, 4, item.getQuantity());
+            chunk.update(entry, 0, entry.length);
+            whole.update(entry, 0, entry.length);
+            counts[index]++;
+        }
+        checksums[index] = (int) chunk.getValue();
+        starts[chunks] = items.length;
+        long fingerprint = whole.getValue() << 32 | itemCount;
+
+        if (previous != null && previous.accountHash == accountHash && previous.fingerprint == fingerprint
+            && previous.chunkItems == chunkItems) {
+            return new ChunkedBankUpload(accountHash, timestamp, previous.snapshotId, items, chunkItems, itemCount,
+                starts, counts, checksums, fingerprint, previous.copyAcknowledged());
+        }
+        return new ChunkedBankUpload(accountHash, timestamp, UUID.randomUUID().toString(), items, chunkItems,
+            itemCount, starts, counts, checksums, fingerprint, new BitSet(chunks));
+    }
+
+    public int chunkCount() {
+        return counts.length;
+    }
+
+    public synchronized void acknowledge(int index) {
+        acknowledged.set(index);
+    }
+
+    /**
+     * Marks a chunk the server reports missing at commit, so it is uploaded again.
+     */
+    public synchronized void forget(int index) {
+        if (index >= 0 && index < counts.length) {
+            acknowledged.clear(index);
+        }
+    }
+
+    public synchronized int acknowledgedCount() {
+        return acknowledged.cardinality();
+    }
+
+    public synchronized boolean isComplete() {
+        return acknowledged.cardinality() == counts.length;
+    }
+
+    /**
+     * Indexes of chunks not yet acknowledged, in order.
+     */
+    public synchronized Deque<Integer> missingChunks() {
+        Deque<Integer> missing = new ArrayDeque<>();
+        for (int i = acknowledged.nextClearBit(0); i < counts.length; i = acknowledged.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        return missing;
+    }
+
+    private synchronized BitSet copyAcknowledged() {
+        return (BitSet) acknowledged.clone();
+    }
+
+    static boolean isPresent(Item item) {
+        return item.getId() > 0 && item.getQuantity() > 0;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,127 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-endpoint circuit breaker. After enough consecutive failures the breaker opens
+ * and calls fail fast without touching the network. Once the open period is over a
+ * single probe is let through (half-open); success closes the breaker, failure
+ * re-opens it for twice as long, up to a cap. A server-supplied Retry-After
+ * overrides the open period.
+ */
+@Slf4j
+public class CircuitBreaker {
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long BASE_OPEN_MS = 30_000;
+    private static final long MAX_OPEN_MS = 5 * 60_000;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        OpenException(String endpoint, long retryInMs) {
+            super("Circuit open for " + endpoint + ", retry in " + (retryInMs / 1000) + "s");
+        }
+    }
+
+    @Getter
+    private final String endpoint;
+    private final BiConsumer<CircuitBreaker, State> listener;
+
+    @Getter
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openMs = BASE_OPEN_MS;
+    private long openUntil = 0;
+    private boolean probeInFlight = false;
+
+    public CircuitBreaker(String endpoint, BiConsumer<CircuitBreaker, State> listener) {
+        this.endpoint = endpoint;
+        this.listener = listener;
+    }
+
+    /**
+     * Call before each attempt. Throws if the breaker is open or a half-open probe is already running.
+     */
+    public void acquire() throws OpenException {
+        State changed = null;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (state == State.OPEN) {
+                if (now < openUntil) {
+                    throw new OpenException(endpoint, openUntil - now);
+                }
+                state = changed = State.HALF_OPEN;
+                probeInFlight = false;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probeInFlight) {
+                    throw new OpenException(endpoint, 0);
+                }
+                probeInFlight = true;
+            }
+        }
+        notifyListener(changed);
+    }
+
+    public void recordSuccess() {
+        State changed = null;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            openMs = BASE_OPEN_MS;
+            probeInFlight = false;
+            if (state != State.CLOSED) {
+                state = changed = State.CLOSED;
+            }
+        }
+        notifyListener(changed);
+    }
+
+    /**
+     * @param retryAfterMs how long the server asked us to wait, or 0 if it didn't say
+     */
+    public void recordFailure(long retryAfterMs) {
+        State changed = null;
+        synchronized (this) {
+            consecutiveFailures++;
+            probeInFlight = false;
+            boolean trip = state == State.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD || retryAfterMs > 0;
+            if (trip) {
+                long duration = retryAfterMs > 0 ? retryAfterMs : openMs;
+                if (state == State.HALF_OPEN && retryAfterMs <= 0) {
+                    openMs = Math.min(openMs * 2, MAX_OPEN_MS);
+                    duration = openMs;
+                }
+                openUntil = System.currentTimeMillis() + duration;
+                if (state != State.OPEN) {
+                    changed = State.OPEN;
+                }
+                state = State.OPEN;
+                log.warn("Circuit for {} open for {}s after {} failures", endpoint, duration / 1000, consecutiveFailures);
+            }
+        }
+        notifyListener(changed);
+    }
+
+    /**
+     * Milliseconds until the breaker will allow a probe, or 0 if it is not open.
+     */
+    public synchronized long remainingOpenMs() {
+        return state == State.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+    }
+
+    private void notifyListener(State changed) {
+        if (changed != null && listener != null) {
+            listener.accept(this, changed);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.oldschooldb;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.DeflaterSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses another request body on the fly as it is written to the connection.
+ * The payload is serialized straight into the compressor, so neither the raw nor
+ * the compressed body is ever held in memory as a whole.
+ */
+public class CompressedRequestBody extends RequestBody {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final RequestBody delegate;
+    private final CompressionCodec codec;
+    private final CompressionStats stats;
+    private final String endpoint;
+
+    public CompressedRequestBody(RequestBody delegate, CompressionCodec codec, CompressionStats stats, String endpoint) {
+        this.delegate = delegate;
+        this.codec = codec;
+        this.stats = stats;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return -1; // Unknown until compressed
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        long cpuStart = cpuTime();
+        CountingSink compressed = new CountingSink(sink);
+        Sink compressor = codec == CompressionCodec.DEFLATE_FAST
+            ? new DeflaterSink(compressed, new Deflater(Deflater.BEST_SPEED))
+            : new FastGzipSink(compressed);
+        CountingSink raw = new CountingSink(compressor);
+
+        BufferedSink body = Okio.buffer(raw);
+        delegate.writeTo(body);
+        body.close(); // Finishes the compressed stream; OkHttp tolerates the request sink being closed here
+
+        stats.record(endpoint, raw.count, compressed.count, cpuTime() - cpuStart);
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Gzip at {@link Deflater#BEST_SPEED}; okio's {@code GzipSink} always uses the default level.
+     * Writes the header, a raw deflate stream and the CRC-32 and length trailer (RFC 1952).
+     */
+    private static class FastGzipSink extends ForwardingSink {
+        private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, // Magic
+            8,                 // Deflate
+            0,                 // No flags
+            0, 0, 0, 0,        // No modification time
+            4,                 // Fastest compression
+            (byte) 0xff,       // Unknown OS
+        };
+
+        private final BufferedSink out;
+        private final CRC32 crc = new CRC32();
+        private final OutputStream checksum = new OutputStream() {
+            @Override
+            public void write(int b) {
+                crc.update(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                crc.update(b, off, len);
+            }
+        };
+        private long size;
+
+        FastGzipSink(Sink sink) throws IOException {
+            this(Okio.buffer(sink));
+        }
+
+        private FastGzipSink(BufferedSink out) throws IOException {
+            super(new DeflaterSink(new ForwardingSink(out) {
+                @Override
+                public void close() throws IOException {
+                    flush(); // The trailer still follows the deflate stream
+                }
+            }, new Deflater(Deflater.BEST_SPEED, true)));
+            this.out = out;
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            source.copyTo(checksum, 0, byteCount);
+            size += byteCount;
+            super.write(source, byteCount);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close(); // Finishes the deflate stream and releases the deflater
+            out.writeIntLe((int) crc.getValue());
+            out.writeIntLe((int) size);
+            out.close();
+        }
+    }
+
+    private static class CountingSink extends ForwardingSink {
+        long count;
+
+        CountingSink(Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            count += byteCount;
+            super.write(source, byteCount);
+        }
+    }
+}
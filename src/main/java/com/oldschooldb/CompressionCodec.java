@@ -0,0 +1,23 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Content-Encoding applied to sync request bodies above the compression threshold.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CompressionCodec {
+    NONE("None", null),
+    GZIP("Gzip", "gzip"),
+    DEFLATE_FAST("Deflate (fast)", "deflate");
+
+    private final String name;
+    private final String contentEncoding;
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
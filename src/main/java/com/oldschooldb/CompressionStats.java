@@ -0,0 +1,49 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running totals of request body compression per endpoint, for tuning the threshold.
+ */
+public class CompressionStats {
+    @Getter
+    public static class Totals {
+        private long requests;
+        private long rawBytes;
+        private long compressedBytes;
+        private long cpuNanos;
+
+        /**
+         * Compressed size as a fraction of the raw size (lower is better).
+         */
+        public synchronized double ratio() {
+            return rawBytes == 0 ? 1.0 : (double) compressedBytes / rawBytes;
+        }
+
+        synchronized void record(long raw, long compressed, long cpu) {
+            requests++;
+            rawBytes += raw;
+            compressedBytes += compressed;
+            cpuNanos += cpu;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d requests, %d -> %d bytes (ratio %.2f), %.1f ms CPU",
+                requests, rawBytes, compressedBytes, ratio(), cpuNanos / 1_000_000.0);
+        }
+    }
+
+    private final Map<String, Totals> totals = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long rawBytes, long compressedBytes, long cpuNanos) {
+        totals.computeIfAbsent(endpoint, k -> new Totals()).record(rawBytes, compressedBytes, cpuNanos);
+    }
+
+    public Map<String, Totals> snapshot() {
+        return totals;
+    }
+}
@@ -0,0 +1,31 @@
+package com.oldschooldb;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A container copied into a snapshot on the client thread.
+ */
+@Name("com.oldschooldb.ContainerCapture")
+@Label("Container Captured")
+@Category({"OldSchoolDB", "Sync"})
+@Description("Client-thread time spent copying a bank, inventory or equipment container for sync")
+@StackTrace(false)
+class ContainerCaptureEvent extends Event {
+    @Label("Container")
+    String container;
+
+    @Label("Item Count")
+    int itemCount;
+
+    @Label("Account Hash")
+    long accountHash;
+
+    @Label("Unchanged")
+    @Description("The snapshot matched the last one sent and was skipped")
+    boolean unchanged;
+}
@@ -0,0 +1,97 @@
+package com.oldschooldb;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Turns container change events into scheduled syncs. A change only marks its container
+ * dirty; each game tick captures the dirty containers whose capture interval has passed,
+ * so a burst of events in one tick costs a single capture. Captures are requested through
+ * the {@link SyncScheduler}, with the configured interval scaled by the {@link SyncBudget}.
+ *
+ * Not thread-safe: call it from the client thread, where the events and ticks arrive.
+ */
+public class ContainerSyncTracker {
+    private final SyncScheduler scheduler;
+    private final SyncBudget budget;
+    private final SyncMetrics metrics;
+    private final ToLongFunction<ContainerType> intervalMs;
+    private final Consumer<ContainerType> sync;
+    private final Set<ContainerType> dirty = EnumSet.noneOf(ContainerType.class);
+    private final Map<ContainerType, Integer> lastCaptureTick = new EnumMap<>(ContainerType.class);
+
+    /**
+     * @param intervalMs configured sync interval of each container
+     * @param sync       captures and submits a container; also runs for trailing edges, so it
+     *                   should check that syncing is still possible
+     */
+    public ContainerSyncTracker(SyncScheduler scheduler, SyncBudget budget, SyncMetrics metrics,
+                                ToLongFunction<ContainerType> intervalMs, Consumer<ContainerType> sync) {
+        this.scheduler = scheduler;
+        this.budget = budget;
+        this.metrics = metrics;
+        this.intervalMs = intervalMs;
+        this.sync = sync;
+    }
+
+    public void markDirty(ContainerType type) {
+        if (!dirty.add(type)) {
+            metrics.recordCoalesced(type); // Already waiting for this tick's capture
+        }
+    }
+
+    public boolean hasDirty() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Requests a sync of every dirty container last captured at least {@code captureInterval}
+     * ticks ago; the rest stay dirty. A tick count that went backwards, as after a login,
+     * does not hold a container back.
+     */
+    public void tick(int currentTick, int captureInterval) {
+        Iterator<ContainerType> pending = dirty.iterator();
+        while (pending.hasNext()) {
+            ContainerType type = pending.next();
+            Integer lastCapture = lastCaptureTick.get(type);
+            if (lastCapture != null && currentTick - lastCapture < captureInterval && currentTick >= lastCapture) {
+                continue; // Stays dirty until its capture interval has passed
+            }
+            pending.remove();
+            lastCaptureTick.put(type, currentTick);
+            request(type);
+        }
+    }
+
+    /**
+     * Requests a sync of {@code type} now, whether or not it is dirty.
+     */
+    public void request(ContainerType type) {
+        // Leading edge syncs now; changes inside the window are sent once when it closes
+        scheduler.request(type, budget.intervalMs(type, intervalMs.applyAsLong(type)), () -> sync.accept(type));
+    }
+
+    /**
+     * Requests every dirty container, ignoring the capture interval, then runs the syncs waiting
+     * in open scheduler windows. Used on shutdown, when there is no next tick or window close.
+     */
+    public void flush() {
+        for (ContainerType type : dirty) {
+            request(type);
+        }
+        dirty.clear();
+        scheduler.flushAll();
+    }
+
+    /**
+     * Forgets the dirty containers without syncing them.
+     */
+    public void clearDirty() {
+        dirty.clear();
+    }
+}
@@ -0,0 +1,18 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The kinds of state the plugin syncs, with the path segment the backend uses for each.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ContainerType {
+    BANK("bank"),
+    INVENTORY("inventory"),
+    EQUIPMENT("equipment"),
+    GRAND_EXCHANGE("ge");
+
+    private final String path;
+}
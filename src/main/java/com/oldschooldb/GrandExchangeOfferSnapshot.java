@@ -0,0 +1,24 @@
+package com.oldschooldb;
+
+import lombok.Value;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.GrandExchangeOfferState;
+
+/**
+ * Immutable copy of a Grand Exchange offer, safe to read off the client thread
+ * and to keep after the slot has changed.
+ */
+@Value
+public class GrandExchangeOfferSnapshot implements GrandExchangeOffer {
+    int itemId;
+    int quantitySold;
+    int totalQuantity;
+    int price;
+    int spent;
+    GrandExchangeOfferState state;
+
+    public static GrandExchangeOfferSnapshot of(GrandExchangeOffer offer) {
+        return new GrandExchangeOfferSnapshot(offer.getItemId(), offer.getQuantitySold(), offer.getTotalQuantity(),
+            offer.getPrice(), offer.getSpent(), offer.getState());
+    }
+}
@@ -0,0 +1,214 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.GrandExchangeOfferState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Decides which Grand Exchange offer events are worth sending, per slot.
+ *
+ * Each slot remembers the last offer handed to the sender. An event identical to
+ * it is dropped. A new offer or a state change (BUYING to BOUGHT, a cancel) is
+ * sent at once, while progress on the same offer (more sold, more spent) is held
+ * for {@link #PROGRESS_WINDOW_MS}, stretched or shortened by the {@link SyncBudget},
+ * so a large offer filling in many trades costs one request per window. After a
+ * login or world hop the client replays every slot; those events are held for
+ * {@link #LOGIN_COLLECT_MS} from the login and then sent together so they leave
+ * in a single batch.
+ */
+@Slf4j
+public class GrandExchangeTracker {
+    static final long PROGRESS_WINDOW_MS = 5000;
+    static final long LOGIN_COLLECT_MS = 1200; // Two game ticks
+
+    private final ScheduledExecutorService timer;
+    private final BiFunction<SyncKey, GrandExchangeOfferSnapshot, CompletableFuture<Boolean>> sender;
+    private final SyncMetrics metrics;
+    private final SyncBudget budget;
+    private final Map<SyncKey, SlotState> slots = new HashMap<>();
+    private boolean collectingLogin = false;
+    private ScheduledFuture<?> loginFlush;
+
+    public GrandExchangeTracker(ScheduledExecutorService timer,
+                                BiFunction<SyncKey, GrandExchangeOfferSnapshot, CompletableFuture<Boolean>> sender,
+                                SyncMetrics metrics, SyncBudget budget) {
+        this.timer = timer;
+        this.sender = sender;
+        this.metrics = metrics;
+        this.budget = budget;
+    }
+
+    /**
+     * Holds the slot replay that follows a login or world hop until it can be sent as one batch.
+     */
+    public synchronized void beginLogin() {
+        collectingLogin = true;
+        // Timed from the login, so collecting ends even if the replay brings nothing to send
+        if (loginFlush == null) {
+            loginFlush = timer.schedule(this::flushLogin, LOGIN_COLLECT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Handles one {@code GrandExchangeOfferChanged} event.
+     */
+    public void offer(long accountHash, int slot, GrandExchangeOffer offer) {
+        SyncKey key = SyncKey.of(accountHash, ContainerType.GRAND_EXCHANGE, slot);
+        GrandExchangeOfferSnapshot snapshot = GrandExchangeOfferSnapshot.of(offer);
+        synchronized (this) {
+            SlotState state = slots.computeIfAbsent(key, k -> new SlotState());
+            if (snapshot.getItemId() <= 0) {
+                // Collected or empty slot: nothing to send, but the next offer here is new
+                state.cancelPending();
+                state.lastSent = null;
+                return;
+            }
+            if (snapshot.equals(state.pending) || (state.pending == null && snapshot.equals(state.lastSent))) {
+                metrics.recordDropped(ContainerType.GRAND_EXCHANGE);
+                return; // No-op transition
+            }
+            if (state.pending != null) {
+                metrics.recordCoalesced(ContainerType.GRAND_EXCHANGE); // The held update is superseded
+            }
+
+            if (collectingLogin) {
+                state.pending = snapshot;
+                return;
+            }
+
+            if (isProgress(state.lastSent, snapshot)) {
+                state.pending = snapshot;
+                if (state.flush == null) {
+                    long window = budget.intervalMs(ContainerType.GRAND_EXCHANGE, PROGRESS_WINDOW_MS);
+                    state.flush = timer.schedule(() -> flushSlot(key), window, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            state.cancelPending();
+            state.lastSent = snapshot;
+        }
+        send(key, snapshot);
+    }
+
+    /**
+     * Sends every held update now, e.g. before shutting down.
+     */
+    public void flushAll() {
+        List<SyncKey> keys = new ArrayList<>();
+        List<GrandExchangeOfferSnapshot> snapshots = new ArrayList<>();
+        synchronized (this) {
+            collectingLogin = false;
+            if (loginFlush != null) {
+                loginFlush.cancel(false);
+                loginFlush = null;
+            }
+            drainPending(keys, snapshots, true);
+        }
+        sendAll(keys, snapshots);
+    }
+
+    /**
+     * A progress update keeps the item, price, size and state and only moves the filled amounts.
+     */
+    private static boolean isProgress(GrandExchangeOfferSnapshot previous, GrandExchangeOfferSnapshot current) {
+        return previous != null
+            && previous.getItemId() == current.getItemId()
+            && previous.getPrice() == current.getPrice()
+            && previous.getTotalQuantity() == current.getTotalQuantity()
+            && previous.getState() == current.getState()
+            && isActive(current.getState());
+    }
+
+    private static boolean isActive(GrandExchangeOfferState state) {
+        return state == GrandExchangeOfferState.BUYING || state == GrandExchangeOfferState.SELLING;
+    }
+
+    private void flushSlot(SyncKey key) {
+        GrandExchangeOfferSnapshot snapshot;
+        synchronized (this) {
+            SlotState state = slots.get(key);
+            if (state == null || state.pending == null) {
+                return;
+            }
+            snapshot = state.pending;
+            state.pending = null;
+            state.flush = null;
+            state.lastSent = snapshot;
+        }
+        send(key, snapshot);
+    }
+
+    private void flushLogin() {
+        List<SyncKey> keys = new ArrayList<>();
+        List<GrandExchangeOfferSnapshot> snapshots = new ArrayList<>();
+        synchronized (this) {
+            collectingLogin = false;
+            loginFlush = null;
+            // Progress already waiting on its own window keeps waiting
+            drainPending(keys, snapshots, false);
+        }
+        if (!keys.isEmpty()) {
+            log.debug("Sending {} GE slots collected at login", keys.size());
+        }
+        sendAll(keys, snapshots);
+    }
+
+    private void drainPending(List<SyncKey> keys, List<GrandExchangeOfferSnapshot> snapshots, boolean includeWindowed) {
+        for (Map.Entry<SyncKey, SlotState> entry : slots.entrySet()) {
+            SlotState state = entry.getValue();
+            if (state.pending == null || (state.flush != null && !includeWindowed)) {
+                continue;
+            }
+            keys.add(entry.getKey());
+            snapshots.add(state.pending);
+            state.lastSent = state.pending;
+            state.cancelPending();
+        }
+    }
+
+    private void sendAll(List<SyncKey> keys, List<GrandExchangeOfferSnapshot> snapshots) {
+        // Sent back to back so they land in the same batch window
+        for (int i = 0; i < keys.size(); i++) {
+            send(keys.get(i), snapshots.get(i));
+        }
+    }
+
+    private void send(SyncKey key, GrandExchangeOfferSnapshot snapshot) {
+        sender.apply(key, snapshot).whenComplete((success, ex) -> {
+            if (ex == null && success) {
+                return;
+            }
+            synchronized (this) {
+                SlotState state = slots.get(key);
+                if (state != null && snapshot.equals(state.lastSent)) {
+                    // Let the same offer through again; the outbox still has this one
+                    state.lastSent = null;
+                }
+            }
+        });
+    }
+
+    private static class SlotState {
+        GrandExchangeOfferSnapshot lastSent;
+        GrandExchangeOfferSnapshot pending;
+        ScheduledFuture<?> flush;
+
+        void cancelPending() {
+            if (flush != null) {
+                flush.cancel(false);
+                flush = null;
+            }
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.oldschooldb;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A run of snapshots of one container stored column by column, as kept in an
+ * {@link ItemHistoryStore} segment:
+ *
+ * <pre>
+ * varint rows, varint first timestamp, then per row varint delta from the previous timestamp
+ * varint dictionary size, then item ids ascending as varint deltas
+ * per item id, its quantity column as runs: varint run length, varint zigzag change
+ *   from the previous row's quantity (0 = absent); a run repeats the same change
+ * </pre>
+ *
+ * Most items keep their quantity from one snapshot to the next, so a column is usually a
+ * single run. The encoded block is deflated.
+ */
+final class ItemHistoryBlock {
+    /**
+     * One snapshot: item ids ascending with their quantities.
+     */
+    static final class Row {
+        final long timestamp;
+        final int[] ids;
+        final int[] quantities;
+
+        Row(long timestamp, int[] ids, int[] quantities) {
+            this.timestamp = timestamp;
+            this.ids = ids;
+            this.quantities = quantities;
+        }
+
+        /**
+         * Builds a row from item_id/quantity pairs, as in {@link ItemSnapshot#getData()}. Repeated ids are summed.
+         */
+        static Row of(long timestamp, int[] data) {
+            Map<Integer, Integer> quantities = new HashMap<>(data.length);
+            for (int i = 0; i + 1 < data.length; i += 2) {
+                if (data[i] > 0 && data[i + 1] > 0) {
+                    quantities.merge(data[i], data[i + 1], Integer::sum);
+                }
+            }
+            return of(timestamp, quantities);
+        }
+
+        static Row of(long timestamp, Map<Integer, Integer> quantities) {
+            int[] ids = new int[quantities.size()];
+            int n = 0;
+            for (int id : quantities.keySet()) {
+                ids[n++] = id;
+            }
+            Arrays.sort(ids);
+            int[] values = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                values[i] = quantities.get(ids[i]);
+            }
+            return new Row(timestamp, ids, values);
+        }
+
+        Map<Integer, Integer> toMap() {
+            Map<Integer, Integer> map = new HashMap<>(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                map.put(ids[i], quantities[i]);
+            }
+            return map;
+        }
+
+        int quantity(int itemId) {
+            int index = Arrays.binarySearch(ids, itemId);
+            return index >= 0 ? quantities[index] : 0;
+        }
+
+        void writeTo(Buffer out) throws IOException {
+            BinaryPayloadWriter.writeVarLong(out, timestamp);
+            BinaryPayloadWriter.writeVarInt(out, ids.length);
+            int previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                BinaryPayloadWriter.writeVarInt(out, ids[i] - previous);
+                BinaryPayloadWriter.writeVarInt(out, quantities[i]);
+                previous = ids[i];
+            }
+        }
+
+        static Row readFrom(BufferedSource in) throws IOException {
+            long timestamp = readVarLong(in);
+            int[] ids = new int[(int) readVarLong(in)];
+            int[] quantities = new int[ids.length];
+            int previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = previous + (int) readVarLong(in);
+                quantities[i] = (int) readVarLong(in);
+                previous = ids[i];
+            }
+            return new Row(timestamp, ids, quantities);
+        }
+    }
+
+    final long[] timestamps;
+    final int[] ids;
+    final int[][] columns; // [item][row]
+
+    private ItemHistoryBlock(long[] timestamps, int[] ids, int[][] columns) {
+        this.timestamps = timestamps;
+        this.ids = ids;
+        this.columns = columns;
+    }
+
+    static ItemHistoryBlock of(List<Row> rows) {
+        TreeSet<Integer> dictionary = new TreeSet<>();
+        for (Row row : rows) {
+            for (int id : row.ids) {
+                dictionary.add(id);
+            }
+        }
+        int[] ids = new int[dictionary.size()];
+        int n = 0;
+        for (int id : dictionary) {
+            ids[n++] = id;
+        }
+
+        long[] timestamps = new long[rows.size()];
+        int[][] columns = new int[ids.length][rows.size()];
+        for (int r = 0; r < rows.size(); r++) {
+            Row row = rows.get(r);
+            timestamps[r] = row.timestamp;
+            for (int i = 0; i < row.ids.length; i++) {
+                columns[Arrays.binarySearch(ids, row.ids[i])][r] = row.quantities[i];
+            }
+        }
+        return new ItemHistoryBlock(timestamps, ids, columns);
+    }
+
+    int size() {
+        return timestamps.length;
+    }
+
+    Row row(int r) {
+        int count = 0;
+        for (int[] column : columns) {
+            if (column[r] > 0) {
+                count++;
+            }
+        }
+        int[] rowIds = new int[count];
+        int[] rowQuantities = new int[count];
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (columns[i][r] > 0) {
+                rowIds[n] = ids[i];
+                rowQuantities[n] = columns[i][r];
+                n++;
+            }
+        }
+        return new Row(timestamps[r], rowIds, rowQuantities);
+    }
+
+    List<Row> rows() {
+        List<Row> rows = new ArrayList<>(size());
+        for (int r = 0; r < size(); r++) {
+            rows.add(row(r));
+        }
+        return rows;
+    }
+
+    /**
+     * The item's quantity column, or null if it never appears in this block.
+     */
+    int[] column(int itemId) {
+        int index = Arrays.binarySearch(ids, itemId);
+        return index >= 0 ? columns[index] : null;
+    }
+
+    byte[] encode() throws IOException {
+        Buffer out = new Buffer();
+        BinaryPayloadWriter.writeVarInt(out, timestamps.length);
+        long previousTimestamp = 0;
+        for (long timestamp : timestamps) {
+            BinaryPayloadWriter.writeVarLong(out, timestamp - previousTimestamp);
+            previousTimestamp = timestamp;
+        }
+        BinaryPayloadWriter.writeVarInt(out, ids.length);
+        int previousId = 0;
+        for (int id : ids) {
+            BinaryPayloadWriter.writeVarInt(out, id - previousId);
+            previousId = id;
+        }
+        for (int[] column : columns) {
+            int previous = 0;
+            long runChange = 0;
+            int runLength = 0;
+            for (int quantity : column) {
+                long change = (long) quantity - previous;
+                previous = quantity;
+                if (runLength > 0 && change != runChange) {
+                    writeRun(out, runLength, runChange);
+                    runLength = 0;
+                }
+                runChange = change;
+                runLength++;
+            }
+            writeRun(out, runLength, runChange);
+        }
+        return deflate(out.readByteArray());
+    }
+
+    static ItemHistoryBlock decode(byte[] compressed) throws IOException {
+        Buffer in = new Buffer().write(inflate(compressed));
+        long[] timestamps = new long[(int) readVarLong(in)];
+        long timestamp = 0;
+        for (int r = 0; r < timestamps.length; r++) {
+            timestamp += readVarLong(in);
+            timestamps[r] = timestamp;
+        }
+        int[] ids = new int[(int) readVarLong(in)];
+        int id = 0;
+        for (int i = 0; i < ids.length; i++) {
+            id += (int) readVarLong(in);
+            ids[i] = id;
+        }
+        int[][] columns = new int[ids.length][timestamps.length];
+        for (int[] column : columns) {
+            long quantity = 0;
+            int r = 0;
+            while (r < column.length) {
+                int runLength = (int) readVarLong(in);
+                long change = unzigzag(readVarLong(in));
+                if (runLength <= 0 || r + runLength > column.length) {
+                    throw new IOException("Corrupt history block");
+                }
+                for (int end = r + runLength; r < end; r++) {
+                    quantity += change;
+                    column[r] = (int) quantity;
+                }
+            }
+        }
+        return new ItemHistoryBlock(timestamps, ids, columns);
+    }
+
+    private static void writeRun(Buffer out, int length, long change) throws IOException {
+        BinaryPayloadWriter.writeVarInt(out, length);
+        BinaryPayloadWriter.writeVarLong(out, (change << 1) ^ (change >> 63));
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarLong(BufferedSource in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            Buffer out = new Buffer();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.readByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            Buffer out = new Buffer();
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated history block");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.readByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt history block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
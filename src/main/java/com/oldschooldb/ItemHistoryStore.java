@@ -0,0 +1,505 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+import okio.Buffer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Local history of bank, inventory and equipment snapshots per account, so questions like
+ * "how much of this item did I have last week" or "what did my bank gain this session"
+ * need no server round trip.
+ *
+ * Each account has a directory with, per container, an append-only {@code <type>.log} of
+ * recent snapshots (framed {@code [int length][int crc32][row]} records, like the
+ * {@link Outbox}) and immutable segments {@code <type>-<first>-<last>-<rows>.seg} named by
+ * the timestamps they cover and their snapshot count. A segment is one {@link ItemHistoryBlock}.
+ * When the log reaches {@link #LOG_ROWS} snapshots it becomes a segment; {@link #compact()}
+ * also merges small neighbouring segments, so the item dictionary is shared across more
+ * snapshots, and then deletes segments older than the retention period and the oldest ones
+ * beyond the disk budget. Snapshots are kept in strictly increasing time order, so segments
+ * never overlap and the log is always newer than every segment.
+ *
+ * Every method reads or writes the disk, so call them off the client thread.
+ */
+@Slf4j
+public class ItemHistoryStore implements Closeable {
+    static final int LOG_ROWS = 64;
+    static final int MAX_SEGMENT_ROWS = 1024;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File directory;
+    private final long maxBytes;
+    private final long maxAgeMs;
+    private final Map<SyncKey, Series> series = new HashMap<>();
+
+    /**
+     * @param maxBytes disk budget for all segments of all accounts
+     * @param maxAgeMs segments whose newest snapshot is older than this are deleted
+     */
+    public ItemHistoryStore(File directory, long maxBytes, long maxAgeMs) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Records a snapshot as item_id/quantity pairs, as in {@link ItemSnapshot#getData()}. A snapshot
+     * no newer than the last one recorded for the container, as after the clock went back, is ignored.
+     */
+    public synchronized void append(long accountHash, ContainerType type, long timestamp, int[] data) {
+        Series history = series(accountHash, type);
+        if (timestamp <= history.newest()) {
+            // Segments are keyed and searched by time: an older row would replace a segment's
+            // entry, orphaning its file, or sit in the log where stateAt takes it as newest
+            log.debug("Ignoring {} snapshot at {}, not after the last one recorded", type, timestamp);
+            return;
+        }
+        ItemHistoryBlock.Row row = ItemHistoryBlock.Row.of(timestamp, data);
+        try {
+            history.appendLog(row);
+            if (history.recent.size() >= LOG_ROWS) {
+                history.flushLog();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to record {} history for account: {}", type, accountHash, e);
+        }
+    }
+
+    /**
+     * The container as it was at {@code timestamp}: the last snapshot at or before it, or the
+     * first one after it if there is none before. Null if there are no snapshots at all.
+     */
+    public synchronized Map<Integer, Integer> stateAt(long accountHash, ContainerType type, long timestamp) {
+        ItemHistoryBlock.Row row = series(accountHash, type).rowAt(timestamp);
+        return row != null ? row.toMap() : null;
+    }
+
+    /**
+     * How each item's quantity changed between the container at {@code from} and at
+     * {@code to} (see {@link #stateAt}). Items that did not change are left out.
+     */
+    public synchronized Map<Integer, Integer> netChange(long accountHash, ContainerType type, long from, long to) {
+        Map<Integer, Integer> start = stateAt(accountHash, type, from);
+        Map<Integer, Integer> end = stateAt(accountHash, type, to);
+        Map<Integer, Integer> change = new HashMap<>();
+        if (start == null || end == null) {
+            return change;
+        }
+        end.forEach((id, quantity) -> change.put(id, quantity - start.getOrDefault(id, 0)));
+        start.forEach((id, quantity) -> change.putIfAbsent(id, -quantity));
+        change.values().removeIf(delta -> delta == 0);
+        return change;
+    }
+
+    /**
+     * The item's quantity over time between {@code from} and {@code to}: one entry per snapshot
+     * where it differs from the previous one, keyed by timestamp. Absent counts as 0.
+     */
+    public synchronized NavigableMap<Long, Integer> quantityHistory(long accountHash, ContainerType type, int itemId,
+                                                                    long from, long to) {
+        NavigableMap<Long, Integer> points = new TreeMap<>();
+        Integer previous = null;
+        for (ItemHistoryBlock block : series(accountHash, type).blocks(from, to)) {
+            int[] column = block.column(itemId);
+            for (int r = 0; r < block.size(); r++) {
+                long timestamp = block.timestamps[r];
+                if (timestamp < from || timestamp > to) {
+                    continue;
+                }
+                int quantity = column != null ? column[r] : 0;
+                if (previous == null || previous != quantity) {
+                    points.put(timestamp, quantity);
+                    previous = quantity;
+                }
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Turns every log into a segment, merges small segments, then applies retention and the disk budget.
+     */
+    public synchronized void compact() {
+        loadAll();
+        for (Series history : series.values()) {
+            try {
+                history.flushLog();
+                history.mergeSegments();
+            } catch (IOException e) {
+                log.warn("Failed to compact {} history for account: {}", history.key.getType(),
+                    history.key.getAccountHash(), e);
+            }
+        }
+        evict(System.currentTimeMillis());
+    }
+
+    /**
+     * Bytes used by segments and logs of all accounts.
+     */
+    public synchronized long diskUsage() {
+        loadAll();
+        long bytes = 0;
+        for (Series history : series.values()) {
+            bytes += history.diskUsage();
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Series history : series.values()) {
+            history.closeLog();
+        }
+    }
+
+    private void evict(long now) {
+        List<Segment> all = new ArrayList<>();
+        long bytes = 0;
+        for (Series history : series.values()) {
+            all.addAll(history.segments.values());
+            bytes += history.diskUsage();
+        }
+        all.sort((a, b) -> Long.compare(a.last, b.last));
+        int deleted = 0;
+        for (Segment segment : all) {
+            if (segment.last >= now - maxAgeMs && bytes <= maxBytes) {
+                break;
+            }
+            bytes -= segment.file.length();
+            segment.series.segments.remove(segment.first);
+            if (!segment.file.delete()) {
+                log.warn("Failed to delete history segment {}", segment.file);
+            }
+            deleted++;
+        }
+        if (deleted > 0) {
+            log.debug("Evicted {} history segments, {} bytes left", deleted, bytes);
+        }
+    }
+
+    private void loadAll() {
+        File[] accounts = directory.listFiles(File::isDirectory);
+        if (accounts == null) {
+            return;
+        }
+        for (File account : accounts) {
+            long accountHash;
+            try {
+                accountHash = Long.parseUnsignedLong(account.getName());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            for (ContainerType type : ContainerType.values()) {
+                if (type != ContainerType.GRAND_EXCHANGE) {
+                    series(accountHash, type);
+                }
+            }
+        }
+    }
+
+    private Series series(long accountHash, ContainerType type) {
+        SyncKey key = SyncKey.of(accountHash, type);
+        Series history = series.get(key);
+        if (history == null) {
+            history = new Series(key, new File(directory, Long.toUnsignedString(accountHash)));
+            history.load();
+            series.put(key, history);
+        }
+        return history;
+    }
+
+    private static final class Segment {
+        final Series series;
+        final File file;
+        final long first;
+        final long last;
+        final int rows;
+
+        Segment(Series series, File file, long first, long last, int rows) {
+            this.series = series;
+            this.file = file;
+            this.first = first;
+            this.last = last;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * The history of one container of one account.
+     */
+    private final class Series {
+        final SyncKey key;
+        final File directory;
+        final String prefix;
+        final TreeMap<Long, Segment> segments = new TreeMap<>();
+        final List<ItemHistoryBlock.Row> recent = new ArrayList<>();
+        FileChannel logChannel;
+
+        Series(SyncKey key, File directory) {
+            this.key = key;
+            this.directory = directory;
+            this.prefix = key.getType().getPath();
+        }
+
+        void load() {
+            File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix + "-") && name.endsWith(SEGMENT_SUFFIX));
+            if (files != null) {
+                for (File file : files) {
+                    String[] range = file.getName()
+                        .substring(prefix.length() + 1, file.getName().length() - SEGMENT_SUFFIX.length()).split("-");
+                    try {
+                        long first = Long.parseLong(range[0]);
+                        segments.put(first, new Segment(this, file, first, Long.parseLong(range[1]), Integer.parseInt(range[2])));
+                    } catch (RuntimeException e) {
+                        log.warn("Ignoring unexpected history file {}", file);
+                    }
+                }
+            }
+            readLog();
+        }
+
+        /**
+         * Timestamp of the newest snapshot, or {@link Long#MIN_VALUE} if there are none.
+         */
+        long newest() {
+            if (!recent.isEmpty()) {
+                return recent.get(recent.size() - 1).timestamp;
+            }
+            return segments.isEmpty() ? Long.MIN_VALUE : segments.lastEntry().getValue().last;
+        }
+
+        long diskUsage() {
+            long bytes = logFile().length();
+            for (Segment segment : segments.values()) {
+                bytes += segment.file.length();
+            }
+            return bytes;
+        }
+
+        /**
+         * Blocks that may hold snapshots between {@code from} and {@code to}, oldest first,
+         * ending with the rows still in the log. Unreadable segments are skipped.
+         */
+        List<ItemHistoryBlock> blocks(long from, long to) {
+            List<ItemHistoryBlock> blocks = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment.last < from || segment.first > to) {
+                    continue;
+                }
+                try {
+                    blocks.add(read(segment));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable history segment {}", segment.file, e);
+                }
+            }
+            if (!recent.isEmpty()) {
+                blocks.add(ItemHistoryBlock.of(recent));
+            }
+            return blocks;
+        }
+
+        /**
+         * The last snapshot at or before {@code timestamp}, or the first one if there is none before.
+         * Only the segment that can hold it is decoded: the log is newer than every segment, and
+         * segments are keyed by their first timestamp.
+         */
+        ItemHistoryBlock.Row rowAt(long timestamp) {
+            for (int r = recent.size() - 1; r >= 0; r--) {
+                if (recent.get(r).timestamp <= timestamp) {
+                    return recent.get(r);
+                }
+            }
+            for (Map.Entry<Long, Segment> entry = segments.floorEntry(timestamp); entry != null;
+                 entry = segments.lowerEntry(entry.getKey())) {
+                ItemHistoryBlock block;
+                try {
+                    block = read(entry.getValue());
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable history segment {}", entry.getValue().file, e);
+                    continue;
+                }
+                for (int r = block.size() - 1; r >= 0; r--) {
+                    if (block.timestamps[r] <= timestamp) {
+                        return block.row(r);
+                    }
+                }
+            }
+            ItemHistoryBlock first = firstBlock();
+            return first != null ? first.row(0) : null;
+        }
+
+        /**
+         * The oldest block, or null if there are no snapshots.
+         */
+        ItemHistoryBlock firstBlock() {
+            for (Segment segment : segments.values()) {
+                try {
+                    return read(segment);
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable history segment {}", segment.file, e);
+                }
+            }
+            return recent.isEmpty() ? null : ItemHistoryBlock.of(recent);
+        }
+
+        void appendLog(ItemHistoryBlock.Row row) throws IOException {
+            if (logChannel == null) {
+                Files.createDirectories(directory.toPath());
+                logChannel = FileChannel.open(logFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            }
+            Buffer payload = new Buffer();
+            row.writeTo(payload);
+            byte[] bytes = payload.readByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            ByteBuffer record = ByteBuffer.allocate(8 + bytes.length);
+            record.putInt(bytes.length);
+            record.putInt((int) crc.getValue());
+            record.put(bytes);
+            record.flip();
+            while (record.hasRemaining()) {
+                logChannel.write(record);
+            }
+            recent.add(row);
+        }
+
+        void flushLog() throws IOException {
+            if (recent.isEmpty()) {
+                return;
+            }
+            writeSegment(new ArrayList<>(recent), Collections.emptyList());
+            recent.clear();
+            closeLog();
+            Files.deleteIfExists(logFile().toPath());
+        }
+
+        /**
+         * Merges runs of neighbouring segments while the result stays within {@link #MAX_SEGMENT_ROWS}.
+         */
+        void mergeSegments() throws IOException {
+            List<Segment> run = new ArrayList<>();
+            int rows = 0;
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (rows + segment.rows > MAX_SEGMENT_ROWS) {
+                    merge(run);
+                    run.clear();
+                    rows = 0;
+                }
+                run.add(segment);
+                rows += segment.rows;
+            }
+            merge(run);
+        }
+
+        private void merge(List<Segment> run) throws IOException {
+            if (run.size() < 2) {
+                return;
+            }
+            List<ItemHistoryBlock.Row> rows = new ArrayList<>();
+            for (Segment segment : run) {
+                rows.addAll(read(segment).rows());
+            }
+            writeSegment(rows, run);
+        }
+
+        /**
+         * Writes {@code rows} as one segment, then deletes {@code replaced}.
+         */
+        private void writeSegment(List<ItemHistoryBlock.Row> rows, List<Segment> replaced) throws IOException {
+            long first = rows.get(0).timestamp;
+            long last = rows.get(rows.size() - 1).timestamp;
+            File file = new File(directory, prefix + "-" + first + "-" + last + "-" + rows.size() + SEGMENT_SUFFIX);
+            File tmp = new File(directory, file.getName() + ".tmp");
+            Files.createDirectories(directory.toPath());
+            Files.write(tmp.toPath(), ItemHistoryBlock.of(rows).encode());
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Segment old : replaced) {
+                segments.remove(old.first);
+                if (!old.file.equals(file) && !old.file.delete()) {
+                    log.warn("Failed to delete merged history segment {}", old.file);
+                }
+            }
+            segments.put(first, new Segment(this, file, first, last, rows.size()));
+        }
+
+        private ItemHistoryBlock read(Segment segment) throws IOException {
+            return ItemHistoryBlock.decode(Files.readAllBytes(segment.file.toPath()));
+        }
+
+        /**
+         * Loads the rows of the log, dropping a record torn by a crash and anything after it.
+         */
+        private void readLog() {
+            File file = logFile();
+            if (!file.exists()) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Read the whole log; it holds at most LOG_ROWS snapshots
+                }
+                buffer.flip();
+                CRC32 crc = new CRC32();
+                int valid = 0;
+                while (buffer.remaining() >= 8) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES || length > buffer.remaining()) {
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    crc.reset();
+                    crc.update(bytes);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    recent.add(ItemHistoryBlock.Row.readFrom(new Buffer().write(bytes)));
+                    valid = buffer.position();
+                }
+                if (valid < channel.size()) {
+                    log.warn("History log {} is damaged after {} bytes", file, valid);
+                    channel.truncate(valid);
+                }
+            } catch (IOException e) {
+                log.warn("Discarding unreadable history log {}", file, e);
+                recent.clear();
+            }
+        }
+
+        void closeLog() {
+            if (logChannel != null) {
+                try {
+                    logChannel.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close history log", e);
+                }
+                logChannel = null;
+            }
+        }
+
+        private File logFile() {
+            return new File(directory, prefix + LOG_SUFFIX);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.oldschooldb;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item names and prices from {@code /api/items/mappings}, kept on disk in a compact
+ * binary file and memory-mapped, so lookups by item id cost an index read and never
+ * a request. The server's {@code ETag} and {@code Last-Modified} are stored with the
+ * data so a refresh is a conditional request that usually ends in a 304.
+ *
+ * <pre>
+ * int magic, int version, int count, int maxId, long fetchedAt
+ * short length + UTF-8 ETag, short length + UTF-8 Last-Modified
+ * int[maxId + 1] record offsets, 0 for unknown ids
+ * records: int price, short length + UTF-8 name
+ * </pre>
+ *
+ * Each download is written to a new file rather than over the old one, which may
+ * still be mapped (Windows refuses to replace a mapped file); older files are
+ * removed the next time the cache is loaded.
+ */
+@Slf4j
+public class ItemMappingCache {
+    private static final int MAGIC = 0x4f534d50; // "OSMP"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "item-mappings-";
+    private static final String SUFFIX = ".bin";
+    private static final int MAX_ITEM_ID = 1 << 20; // Sanity bound on the offset table
+
+    private final File directory;
+    private volatile Mapping mapping;
+
+    public ItemMappingCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Maps the newest cache file, if any, and deletes the ones it replaced.
+     */
+    public synchronized void load() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        File newest = null;
+        for (File file : files) {
+            if (newest == null || generation(file) > generation(newest)) {
+                newest = file;
+            }
+        }
+        try {
+            mapping = Mapping.open(newest);
+            log.debug("Loaded {} item mappings from {}", mapping.count, newest);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Discarding unreadable item mappings {}", newest, e);
+            newest = null;
+        }
+        for (File file : files) {
+            if (file != newest && !file.delete()) {
+                log.debug("Could not delete stale item mappings {}", file);
+            }
+        }
+    }
+
+    public boolean isLoaded() {
+        return mapping != null;
+    }
+
+    public String getEtag() {
+        Mapping current = mapping;
+        return current == null ? null : current.etag;
+    }
+
+    public String getLastModified() {
+        Mapping current = mapping;
+        return current == null ? null : current.lastModified;
+    }
+
+    /**
+     * Guide price of {@code itemId}, or -1 if it is not in the cache.
+     */
+    public int getPrice(int itemId) {
+        Mapping current = mapping;
+        int offset = current == null ? 0 : current.offset(itemId);
+        return offset == 0 ? -1 : current.buffer.getInt(offset);
+    }
+
+    /**
+     * Name of {@code itemId}, or null if it is not in the cache.
+     */
+    public String getName(int itemId) {
+        Mapping current = mapping;
+        int offset = current == null ? 0 : current.offset(itemId);
+        if (offset == 0) {
+            return null;
+        }
+        ByteBuffer view = current.buffer.duplicate();
+        view.position(offset + 4);
+        int length = view.getShort() & 0xffff;
+        if (length > view.remaining()) {
+            return null; // Damaged record
+        }
+        byte[] name = new byte[length];
+        view.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Summed guide price of everything in {@code snapshot}, or -1 if no mappings are
+     * loaded. Items missing from the cache count as zero.
+     */
+    public long valueOf(ItemSnapshot snapshot) {
+        Mapping current = mapping;
+        if (current == null) {
+            return -1;
+        }
+        long total = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            int offset = current.offset(snapshot.getId(i));
+            if (offset != 0) {
+                total += (long) current.buffer.getInt(offset) * snapshot.getQuantity(i);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Summed guide price of item_id -> quantity, as returned by {@link ItemHistoryStore}.
+     */
+    public long valueOf(Map<Integer, Integer> quantities) {
+        Mapping current = mapping;
+        if (current == null) {
+            return -1;
+        }
+        long total = 0;
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            int offset = current.offset(entry.getKey());
+            if (offset != 0) {
+                total += (long) current.buffer.getInt(offset) * entry.getValue();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Replaces the cache with a freshly downloaded mappings document: a JSON array of
+     * objects with {@code id}, {@code name} and {@code price} (or {@code value}),
+     * optionally wrapped in an object under {@code items}.
+     */
+    public synchronized int update(Reader json, String etag, String lastModified) throws IOException {
+        List<Entry> entries = parse(json);
+        long fetchedAt = System.currentTimeMillis();
+        if (mapping != null && fetchedAt <= mapping.fetchedAt) {
+            fetchedAt = mapping.fetchedAt + 1; // Keep generations ordered
+        }
+
+        File file = new File(directory, PREFIX + fetchedAt + SUFFIX);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        Files.createDirectories(directory.toPath());
+        write(tmp, entries, fetchedAt, etag, lastModified);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mapping = Mapping.open(file);
+        log.debug("Stored {} item mappings in {}", entries.size(), file);
+        return entries.size();
+    }
+
+    private static List<Entry> parse(Reader json) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        JsonReader reader = new JsonReader(json);
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext() && !reader.nextName().equals("items")) {
+                reader.skipValue();
+            }
+            if (!reader.hasNext()) {
+                throw new IOException("Item mappings have no items array");
+            }
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Entry entry = new Entry();
+            boolean priced = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                } else if (field.equals("id")) {
+                    entry.id = reader.nextInt();
+                } else if (field.equals("name")) {
+                    entry.name = reader.nextString();
+                } else if (field.equals("price")) {
+                    entry.price = (int) Math.min(reader.nextLong(), Integer.MAX_VALUE);
+                    priced = true;
+                } else if (field.equals("value") && !priced) {
+                    entry.price = (int) Math.min(reader.nextLong(), Integer.MAX_VALUE);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (entry.id >= 0 && entry.id < MAX_ITEM_ID) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static void write(File file, List<Entry> entries, long fetchedAt, String etag, String lastModified) throws IOException {
+        int maxId = 0;
+        for (Entry entry : entries) {
+            maxId = Math.max(maxId, entry.id);
+        }
+        byte[] etagBytes = bytes(etag);
+        byte[] lastModifiedBytes = bytes(lastModified);
+
+        int[] offsets = new int[maxId + 1];
+        int position = 24 + 2 + etagBytes.length + 2 + lastModifiedBytes.length + 4 * offsets.length;
+        byte[][] names = new byte[entries.size()][];
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            names[i] = bytes(entry.name);
+            offsets[entry.id] = position; // A repeated id keeps its last record
+            position += 4 + 2 + names[i].length;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(maxId);
+            out.writeLong(fetchedAt);
+            out.writeShort(etagBytes.length);
+            out.write(etagBytes);
+            out.writeShort(lastModifiedBytes.length);
+            out.write(lastModifiedBytes);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                out.writeInt(entries.get(i).price);
+                out.writeShort(names[i].length);
+                out.write(names[i]);
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return bytes.length > 0xffff ? new byte[0] : bytes;
+    }
+
+    private static long generation(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class Entry {
+        int id;
+        String name;
+        int price;
+    }
+
+    private static class Mapping {
+        final MappedByteBuffer buffer;
+        final int count;
+        final int maxId;
+        final long fetchedAt;
+        final String etag;
+        final String lastModified;
+        final int offsetTable;
+        final long records;
+
+        private Mapping(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not an item mappings file");
+            }
+            count = buffer.getInt();
+            maxId = buffer.getInt();
+            fetchedAt = buffer.getLong();
+            etag = string(buffer);
+            lastModified = string(buffer);
+            offsetTable = buffer.position();
+            records = offsetTable + 4L * (maxId + 1);
+            if (maxId < 0 || maxId >= MAX_ITEM_ID || records > buffer.limit()) {
+                throw new IOException("Truncated item mappings file");
+            }
+        }
+
+        static Mapping open(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                return new Mapping(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        /**
+         * Offset of the record for {@code itemId}, or 0 if there is none or the offset points
+         * outside the records, as it would in a damaged file.
+         */
+        int offset(int itemId) {
+            if (itemId < 0 || itemId > maxId) {
+                return 0;
+            }
+            int offset = buffer.getInt(offsetTable + 4 * itemId);
+            return offset < records || offset > buffer.limit() - 6 ? 0 : offset;
+        }
+
+        private static String string(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.getShort() & 0xffff];
+            buffer.get(bytes);
+            return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.oldschooldb;
+
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+
+/**
+ * The non-empty slots of an item container, copied on the client thread into the
+ * item_id/quantity pairs stored in an {@link OutboxEntry}, together with a fingerprint
+ * of the contents. The copy is the only one made: the pipeline and the local history
+ * share it, so it must not be modified.
+ */
+public class ItemSnapshot {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int[] data;
+    private final long fingerprint;
+
+    private ItemSnapshot(int[] data, long fingerprint) {
+        this.data = data;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Copies the non-empty slots of {@code container}, in slot order, hashing them as they are copied.
+     * Must be called on the client thread.
+     */
+    public static ItemSnapshot capture(ItemContainer container) {
+        Item[] items = container.getItems();
+        int count = 0;
+        for (Item item : items) {
+            if (item.getId() > 0 && item.getQuantity() > 0) {
+                count++;
+            }
+        }
+
+        int[] data = new int[count * 2];
+        long hash = FNV_OFFSET;
+        int index = 0;
+        for (Item item : items) {
+            int id = item.getId();
+            int quantity = item.getQuantity();
+            if (id <= 0 || quantity <= 0) {
+                continue; // Skip empty slots
+            }
+            data[index++] = id;
+            data[index++] = quantity;
+            hash = (hash ^ id) * FNV_PRIME;
+            hash = (hash ^ quantity) * FNV_PRIME;
+        }
+        return new ItemSnapshot(data, (hash ^ count) * FNV_PRIME);
+    }
+
+    public int size() {
+        return data.length / 2;
+    }
+
+    public int getId(int index) {
+        return data[index * 2];
+    }
+
+    public int getQuantity(int index) {
+        return data[index * 2 + 1];
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the id/quantity sequence; equal contents always give equal fingerprints.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * The contents as item_id/quantity pairs. Shared, not copied.
+     */
+    public int[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,75 @@
+package com.oldschooldb;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * Passes another request body through unchanged, reporting how many bytes it wrote
+ * and how long writing took, and emitting a {@link PayloadWriteEvent} when JFR events
+ * are on. Bodies are streamed, so for the raw payload the time is serialization plus
+ * whatever the layers below (compression, socket) spent.
+ */
+public class MeteredRequestBody extends RequestBody {
+    @FunctionalInterface
+    public interface Listener {
+        void written(long bytes, long nanos);
+    }
+
+    private final RequestBody delegate;
+    private final String endpoint;
+    private final String stage;
+    private final long accountHash;
+    private final int itemCount;
+    private final Listener listener;
+
+    /**
+     * @param stage     what {@code delegate} produces, e.g. {@code raw} or a compression codec
+     * @param itemCount items or offers in the payload, for the JFR event
+     */
+    public MeteredRequestBody(RequestBody delegate, String endpoint, String stage, long accountHash, int itemCount,
+                              Listener listener) {
+        this.delegate = delegate;
+        this.endpoint = endpoint;
+        this.stage = stage;
+        this.accountHash = accountHash;
+        this.itemCount = itemCount;
+        this.listener = listener;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        long[] count = new long[1];
+        BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+            @Override
+            public void write(Buffer source, long byteCount) throws IOException {
+                count[0] += byteCount;
+                super.write(source, byteCount);
+            }
+        });
+
+        PayloadWriteEvent event = SyncEvents.beginPayloadWrite();
+        long start = System.nanoTime();
+        delegate.writeTo(counting);
+        if (counting.isOpen()) {
+            counting.emit(); // Compressed bodies close the sink themselves
+        }
+        listener.written(count[0], System.nanoTime() - start);
+        SyncEvents.endPayloadWrite(event, endpoint, stage, count[0], accountHash, itemCount);
+    }
+}
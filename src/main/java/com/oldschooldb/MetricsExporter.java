@@ -0,0 +1,48 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends a {@link SyncMetrics} summary as one JSON line to {@code metrics.jsonl}.
+ * When the file grows past {@link #MAX_FILE_BYTES} it is rolled over to
+ * {@code metrics.jsonl.1}, so at most two files are ever kept.
+ */
+@Slf4j
+public class MetricsExporter {
+    private static final long MAX_FILE_BYTES = 1024 * 1024;
+
+    private final SyncMetrics metrics;
+    private final File file;
+    private final Gson gson;
+
+    public MetricsExporter(SyncMetrics metrics, File directory, Gson gson) {
+        this.metrics = metrics;
+        this.file = new File(directory, "metrics.jsonl");
+        this.gson = gson;
+    }
+
+    public void export() {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            if (file.length() > MAX_FILE_BYTES) {
+                Files.move(file.toPath(), new File(file.getPath() + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                gson.toJson(metrics.toJson(), writer);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            log.warn("Failed to export sync metrics to {}", file, e);
+        }
+    }
+}
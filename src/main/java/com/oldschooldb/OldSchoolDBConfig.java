@@ -3,6 +3,9 @@ package com.oldschooldb;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.ConfigSection;
+import net.runelite.client.config.Range;
+import net.runelite.client.config.Units;
 
 @ConfigGroup("oldschooldb")
 public interface OldSchoolDBConfig extends Config
@@ -58,4 +61,189 @@ public interface OldSchoolDBConfig extends Config
 		return false;
 	}
 
+	@ConfigSection(
+		name = "Sync",
+		description = "How often container changes are sent to OldSchoolDB",
+		position = 100
+	)
+	String syncSection = "sync";
+
+	@ConfigItem(
+		keyName = "bankSyncInterval",
+		name = "Bank Sync Interval",
+		description = "Bank changes within this window are combined into one sync sent when it ends",
+		section = syncSection,
+		position = 101
+	)
+	@Range(min = 1, max = 300)
+	@Units(Units.SECONDS)
+	default int bankSyncInterval()
+	{
+		return 10;
+	}
+
+	@ConfigItem(
+		keyName = "inventorySyncInterval",
+		name = "Inventory Sync Interval",
+		description = "Inventory changes within this window are combined into one sync sent when it ends",
+		section = syncSection,
+		position = 102
+	)
+	@Range(min = 1, max = 300)
+	@Units(Units.SECONDS)
+	default int inventorySyncInterval()
+	{
+		return 10;
+	}
+
+	@ConfigItem(
+		keyName = "equipmentSyncInterval",
+		name = "Equipment Sync Interval",
+		description = "Equipment changes within this window are combined into one sync sent when it ends",
+		section = syncSection,
+		position = 103
+	)
+	@Range(min = 1, max = 300)
+	@Units(Units.SECONDS)
+	default int equipmentSyncInterval()
+	{
+		return 10;
+	}
+
+	@ConfigItem(
+		keyName = "captureTickInterval",
+		name = "Capture Interval",
+		description = "Read a changed container at most once per this many game ticks, however often it changes",
+		section = syncSection,
+		position = 104
+	)
+	@Range(min = 1, max = 100)
+	@Units(Units.TICKS)
+	default int captureTickInterval()
+	{
+		return 2;
+	}
+
+	@ConfigItem(
+		keyName = "requestCompression",
+		name = "Request Compression",
+		description = "Compress sync uploads larger than the threshold below",
+		section = syncSection,
+		position = 105
+	)
+	default CompressionCodec requestCompression()
+	{
+		return CompressionCodec.GZIP;
+	}
+
+	@ConfigItem(
+		keyName = "compressionThreshold",
+		name = "Compression Threshold (bytes)",
+		description = "Uploads estimated smaller than this are sent uncompressed",
+		section = syncSection,
+		position = 106
+	)
+	@Range(min = 0, max = 1048576)
+	default int compressionThreshold()
+	{
+		return 2048;
+	}
+
+	@ConfigItem(
+		keyName = "syncChannel",
+		name = "Live Sync Channel",
+		description = "Stream updates over one persistent connection instead of a request per update. Uses normal requests whenever the connection is unavailable",
+		section = syncSection,
+		position = 107
+	)
+	default boolean syncChannel()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "historyBudget",
+		name = "Local History (MB)",
+		description = "Disk space for the local history of your bank, inventory and equipment. 0 turns it off",
+		section = syncSection,
+		position = 108
+	)
+	@Range(min = 0, max = 1024)
+	default int historyBudget()
+	{
+		return 32;
+	}
+
+	@ConfigItem(
+		keyName = "historyRetentionDays",
+		name = "History Retention",
+		description = "Local history older than this is deleted",
+		section = syncSection,
+		position = 109
+	)
+	@Range(min = 1, max = 3650)
+	@Units(" days")
+	default int historyRetentionDays()
+	{
+		return 90;
+	}
+
+	@ConfigSection(
+		name = "Diagnostics",
+		description = "Sync timings and counters for troubleshooting",
+		position = 200,
+		closedByDefault = true
+	)
+	String diagnosticsSection = "diagnostics";
+
+	@ConfigItem(
+		keyName = "showMetricsPanel",
+		name = "Show Metrics Panel",
+		description = "Add a side panel with sync latencies, bytes sent, retries and dropped updates",
+		section = diagnosticsSection,
+		position = 201
+	)
+	default boolean showMetricsPanel()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "metricsExportInterval",
+		name = "Export Metrics Every",
+		description = "Append a sync metrics summary to .runelite/oldschooldb/metrics.jsonl this often (0 = off)",
+		section = diagnosticsSection,
+		position = 202
+	)
+	@Range(min = 0, max = 1440)
+	@Units(Units.MINUTES)
+	default int metricsExportInterval()
+	{
+		return 0;
+	}
+
+	@ConfigItem(
+		keyName = "jfrEvents",
+		name = "JFR Events",
+		description = "Emit Java Flight Recorder events for captures, payloads, requests and auth, for profiling frame hitches",
+		section = diagnosticsSection,
+		position = 203
+	)
+	default boolean jfrEvents()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "recordSessionTrace",
+		name = "Record Session Trace",
+		description = "Write container, GE, login and tick events to .runelite/oldschooldb/traces for replaying sync issues. Traces include your items",
+		section = diagnosticsSection,
+		position = 204
+	)
+	default boolean recordSessionTrace()
+	{
+		return false;
+	}
+
 }
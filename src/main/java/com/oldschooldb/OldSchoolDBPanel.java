@@ -0,0 +1,206 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import java.awt.BasicStroke;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import javax.swing.border.EmptyBorder;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+import net.runelite.client.ui.PluginPanel;
+
+/**
+ * Side panel showing {@link SyncMetrics}: where time goes on the client thread,
+ * how long the backend takes to answer, how each lane meets its latency target,
+ * and how much was sent, dropped or retried.
+ * Refreshes once a second while it is open.
+ */
+public class OldSchoolDBPanel extends PluginPanel
+{
+	private static final long serialVersionUID = 1L;
+	private static final int REFRESH_MS = 1000;
+
+	private final SyncMetrics metrics;
+	private final Gson gson;
+	private final JPanel content = new JPanel();
+	private final Timer refreshTimer;
+
+	public OldSchoolDBPanel(SyncMetrics metrics, Gson gson)
+	{
+		this.metrics = metrics;
+		this.gson = gson;
+
+		setLayout(new BorderLayout());
+		setBorder(new EmptyBorder(10, 10, 10, 10));
+
+		JLabel title = new JLabel("OldSchoolDB Sync");
+		title.setFont(FontManager.getRunescapeBoldFont());
+		title.setForeground(Color.WHITE);
+		add(title, BorderLayout.NORTH);
+
+		content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
+		add(content, BorderLayout.CENTER);
+
+		JButton copy = new JButton("Copy summary");
+		copy.setToolTipText("Copy all metrics as JSON to the clipboard");
+		copy.addActionListener(e -> Toolkit.getDefaultToolkit().getSystemClipboard()
+			.setContents(new StringSelection(gson.toJson(metrics.toJson())), null));
+		add(copy, BorderLayout.SOUTH);
+
+		refreshTimer = new Timer(REFRESH_MS, e -> refresh());
+		refresh();
+	}
+
+	@Override
+	public void onActivate()
+	{
+		refresh();
+		refreshTimer.start();
+	}
+
+	@Override
+	public void onDeactivate()
+	{
+		refreshTimer.stop();
+	}
+
+	private void refresh()
+	{
+		content.removeAll();
+
+		JPanel queue = section("Pipeline");
+		row(queue, "Queued uploads", String.valueOf(metrics.getQueueDepth()));
+		content.add(queue);
+
+		for (Map.Entry<SyncLane, SyncMetrics.LaneStats> entry : metrics.getLanes().entrySet())
+		{
+			SyncMetrics.LaneStats stats = entry.getValue();
+			LatencyHistogram latency = stats.getLatency();
+			JPanel section = section(entry.getKey().getLabel() + " lane");
+			row(section, "Queued", String.valueOf(metrics.getLaneDepth(entry.getKey())));
+			if (latency.count() > 0)
+			{
+				row(section, "Latency p50/p99", formatMicros(latency.percentileMicros(0.5))
+					+ " / " + formatMicros(latency.percentileMicros(0.99)));
+			}
+			row(section, "Within " + formatMicros(entry.getKey().getSloMs() * 1000),
+				String.format("%.1f%%", stats.sloAttainment() * 100));
+			content.add(section);
+		}
+
+		for (Map.Entry<ContainerType, SyncMetrics.ContainerStats> entry : metrics.getContainers().entrySet())
+		{
+			SyncMetrics.ContainerStats stats = entry.getValue();
+			JPanel section = section(entry.getKey().getPath());
+			if (stats.getCapture().count() > 0)
+			{
+				row(section, "Capture p50/p99", formatMicros(stats.getCapture().percentileMicros(0.5))
+					+ " / " + formatMicros(stats.getCapture().percentileMicros(0.99)));
+				row(section, "Capture max", formatMicros(stats.getCapture().maxMicros()));
+			}
+			row(section, "Dropped", String.valueOf(stats.getDropped().sum()));
+			row(section, "Coalesced", String.valueOf(stats.getCoalesced().sum()));
+			content.add(section);
+		}
+
+		for (Map.Entry<String, SyncMetrics.EndpointStats> entry : metrics.getEndpoints().entrySet())
+		{
+			SyncMetrics.EndpointStats stats = entry.getValue();
+			LatencyHistogram http = stats.getHttp();
+			JPanel section = section(entry.getKey());
+			row(section, "Requests", String.valueOf(http.count()));
+			row(section, "HTTP p50/p99", formatMicros(http.percentileMicros(0.5))
+				+ " / " + formatMicros(http.percentileMicros(0.99)));
+			row(section, "HTTP max", formatMicros(http.maxMicros()));
+			row(section, "Write p50", formatMicros(stats.getSerialization().percentileMicros(0.5)));
+			row(section, "Bytes raw/sent", formatBytes(stats.getRawBytes().sum())
+				+ " / " + formatBytes(stats.getWireBytes().sum()));
+			row(section, "Retries", String.valueOf(stats.getRetries().sum()));
+			row(section, "Failures", String.valueOf(stats.getFailures().sum()));
+			content.add(section);
+		}
+
+		content.revalidate();
+		content.repaint();
+	}
+
+	private static JPanel section(String name)
+	{
+		JPanel section = new JPanel(new GridLayout(0, 2, 4, 2));
+		section.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		section.setBorder(BorderFactory.createCompoundBorder(
+			new EmptyBorder(6, 0, 0, 0),
+			BorderFactory.createTitledBorder(name)));
+		return section;
+	}
+
+	private static void row(JPanel section, String name, String value)
+	{
+		JLabel label = new JLabel(name);
+		label.setFont(FontManager.getRunescapeSmallFont());
+		label.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+		JLabel valueLabel = new JLabel(value);
+		valueLabel.setFont(FontManager.getRunescapeSmallFont());
+		valueLabel.setForeground(Color.WHITE);
+		section.add(label);
+		section.add(valueLabel);
+	}
+
+	static String formatMicros(long micros)
+	{
+		if (micros < 1000)
+		{
+			return micros + "µs";
+		}
+		if (micros < 1_000_000)
+		{
+			return String.format("%.1fms", micros / 1000.0);
+		}
+		return String.format("%.2fs", micros / 1_000_000.0);
+	}
+
+	static String formatBytes(long bytes)
+	{
+		if (bytes < 1024)
+		{
+			return bytes + " B";
+		}
+		if (bytes < 1024 * 1024)
+		{
+			return String.format("%.1f KB", bytes / 1024.0);
+		}
+		return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+	}
+
+	/**
+	 * A small bar-chart icon for the sidebar, drawn here rather than shipped as a resource.
+	 */
+	static BufferedImage createIcon()
+	{
+		BufferedImage icon = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = icon.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(new Color(255, 152, 31));
+		g.fillRect(2, 9, 3, 5);
+		g.fillRect(7, 5, 3, 9);
+		g.fillRect(12, 2, 3, 12);
+		g.setColor(Color.WHITE);
+		g.setStroke(new BasicStroke(1f));
+		g.drawLine(0, 15, 15, 15);
+		g.dispose();
+		return icon;
+	}
+}
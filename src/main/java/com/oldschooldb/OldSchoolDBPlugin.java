@@ -1,26 +1,42 @@
 package com.oldschooldb;
 
+import com.google.gson.Gson;
 import com.google.inject.Provides;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
+import javax.swing.SwingUtilities;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
-import net.runelite.api.GrandExchangeOffer;
 import net.runelite.api.GrandExchangeOfferState;
 import net.runelite.api.InventoryID;
-import net.runelite.api.Item;
 import net.runelite.api.ItemContainer;
 import net.runelite.api.events.AccountHashChanged;
 import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
 import net.runelite.api.events.ItemContainerChanged;
 import net.runelite.api.events.GrandExchangeOfferChanged;
+import net.runelite.client.RuneLite;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
+import net.runelite.client.ui.ClientToolbar;
+import net.runelite.client.ui.NavigationButton;
+import net.runelite.client.util.QuantityFormatter;
+import okhttp3.OkHttpClient;
 
 @Slf4j
 @PluginDescriptor(
@@ -41,44 +57,188 @@ public class OldSchoolDBPlugin extends Plugin
 	@Inject
 	private ClientThread clientThread;
 
+	@Inject
+	private Gson gson;
+
+	@Inject
+	private ScheduledExecutorService executor;
+
+	@Inject
+	private ClientToolbar clientToolbar;
+
+	@Inject
+	private OkHttpClient okHttpClient;
+
 	private AuthService authService;
-	private boolean isAuthenticated = false;
+	private SyncPipeline syncPipeline;
+	private GrandExchangeTracker geTracker;
+	private volatile boolean isAuthenticated = false; // Verified, or verified recently enough to start with
+	private volatile boolean tokenVerified = false; // Verified by the server this session
 	private boolean showAuthMessageOnLogin = false;
 	private boolean authenticationAttempted = false;
 	private Long currentAccountHash = null;
 
-	// Rate limiting for syncs
-	private long lastBankSyncTime = 0;
-	private long lastInventorySyncTime = 0;
-	private long lastEquipmentSyncTime = 0;
-	private static final long SYNC_COOLDOWN_MS = 10000; // 10 seconds between syncs
+	private ContainerSyncTracker containerSync;
+	private SyncMetrics metrics;
+	private SyncBudget syncBudget;
+	private MetricsExporter metricsExporter;
+	private ItemMappingCache itemMappings;
+	private VerifiedTokenStore tokenStore;
+	private SessionRecorder sessionRecorder;
+	private ItemHistoryStore itemHistory;
+	private ScheduledFuture<?> historyCompaction;
+	private volatile long sessionStartedAt = 0; // When the player logged in, for the session's bank change
+	private ScheduledFuture<?> metricsExport;
+	private ScheduledFuture<?> statusRefresh; // Ticks the retry countdown while a breaker is open
+	private NavigationButton navButton;
+	private static final long SHUTDOWN_DRAIN_MS = 250; // Keeps shutdown snappy; unsent syncs stay in the outbox
+	private static final long HISTORY_COMPACTION_MINUTES = 15;
+	private static final DateTimeFormatter TRACE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
 
 	@Override
 	protected void startUp() throws Exception
 	{
 		System.out.println("OldSchoolDB Connector started!");
-		String serverUrl = config.useLocalhost() ? "http://localhost:3001" : "https://api.oldschooldb.com";
-		authService = new AuthService(serverUrl);
+		SyncEvents.setEnabled(config.jfrEvents());
+		metrics = new SyncMetrics();
+		SyncDispatcher syncDispatcher = new SyncDispatcher(metrics);
+		metrics.setQueueDepth(syncDispatcher::queueDepth);
+		metrics.setLaneDepth(syncDispatcher::laneDepth);
+		SyncScheduler syncScheduler = new SyncScheduler(executor, clientThread::invokeLater, metrics);
+		syncBudget = new SyncBudget();
+		containerSync = new ContainerSyncTracker(syncScheduler, syncBudget, metrics, this::syncIntervalMs,
+			this::syncContainer);
+		authService = new AuthService(okHttpClient, serverUrl(), syncDispatcher.executor(SyncLane.EXPEDITED),
+			syncDispatcher.executor(SyncLane.BULK), metrics, syncBudget);
+		authService.setCompression(config.requestCompression(), config.compressionThreshold());
+		authService.setBreakerListener((breaker, state) -> updateConnectionStatus());
+		File dataDirectory = new File(RuneLite.RUNELITE_DIR, "oldschooldb");
+		SyncChannel syncChannel = new SyncChannel(authService, executor, metrics, syncBudget);
+		syncPipeline = new SyncPipeline(syncDispatcher, authService, executor, dataDirectory, gson, syncChannel);
+		tokenStore = new VerifiedTokenStore(dataDirectory, gson);
+		restoreVerifiedToken();
+		geTracker = new GrandExchangeTracker(executor, this::syncGrandExchangeOffer, metrics, syncBudget);
+		metricsExporter = new MetricsExporter(metrics, dataDirectory, gson);
+		itemMappings = new ItemMappingCache(dataDirectory);
+		executor.execute(itemMappings::load);
+		updateMetricsPanel();
+		scheduleMetricsExport();
+		// Recording is fed from the client thread, so start and stop it there
+		clientThread.invokeLater(this::updateSessionRecorder);
+		openItemHistory();
 		
-		// Test connection to server
-		authService.testConnection().thenAccept(connected -> {
-			if (connected) {
-				log.info("Successfully connected to OldSchoolDB server");
-				attemptAuthentication();
-			} else {
-				log.warn("Failed to connect to OldSchoolDB server at: https://api.oldschooldb.com");
-			}
-		});
+		refreshItemMappings();
+
+		if (hasApiToken()) {
+			// The handshake confirms connectivity, verifies the token and reads capabilities in one request
+			attemptAuthentication();
+		} else {
+			authService.testConnection().thenAccept(connected -> {
+				if (connected) {
+					log.info("Successfully connected to OldSchoolDB server");
+				} else {
+					log.warn("Failed to connect to OldSchoolDB server at: {}", authService.getServerUrl());
+				}
+			});
+		}
 	}
 
 	@Override
 	protected void shutDown() throws Exception
 	{
 		log.info("OldSchoolDB Connector stopped!");
+		if (authService != null) {
+			authService.getCompressionStats().snapshot().forEach((endpoint, totals) ->
+				log.debug("Request compression for {}: {}", endpoint, totals));
+		}
+		if (metricsExport != null) {
+			metricsExport.cancel(false);
+			metricsExport = null;
+			metricsExporter.export(); // Final summary for the session
+		}
+		synchronized (this) {
+			if (statusRefresh != null) {
+				statusRefresh.cancel(false);
+				statusRefresh = null;
+			}
+		}
+		if (navButton != null) {
+			clientToolbar.removeNavigation(navButton);
+			navButton = null;
+		}
+		long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_DRAIN_MS);
+		ContainerSyncTracker tracker = containerSync;
+		if (tracker != null) {
+			// Containers changed since the last tick, and changes coalesced into a window that
+			// has not closed yet, are captured now rather than dropped. The tracker and the
+			// containers belong to the client thread, so flush there and wait within the drain budget
+			CountDownLatch flushed = new CountDownLatch(1);
+			clientThread.invokeLater(() -> {
+				containerSync = null;
+				if (syncPipeline != null) {
+					tracker.flush(); // Skipped if shutdown stopped waiting and closed the pipeline
+				}
+				flushed.countDown();
+			});
+			try {
+				if (!flushed.await(SHUTDOWN_DRAIN_MS, TimeUnit.MILLISECONDS)) {
+					log.debug("Container flush still waiting for the client thread at shutdown");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (geTracker != null) {
+			// Progress held back for coalescing goes out with the rest
+			geTracker.flushAll();
+			geTracker = null;
+		}
+		if (syncPipeline != null) {
+			// Only a brief chance for uploads already in flight; the rest is replayed from the outbox next session
+			syncPipeline.shutdown(Math.max(0, drainDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			syncPipeline = null;
+		}
+		// Closed on the client thread, after any tick still feeding it
+		clientThread.invokeLater(this::stopSessionRecorder);
+		closeItemHistory();
 		isAuthenticated = false;
+		tokenVerified = false;
 		authenticationAttempted = false; // Reset for next startup
 	}
 
+	private String serverUrl() {
+		return config.useLocalhost() ? "http://localhost:3001" : "https://api.oldschooldb.com";
+	}
+
+	private boolean hasApiToken() {
+		String apiToken = config.apiToken();
+		return apiToken != null && !apiToken.trim().isEmpty();
+	}
+
+	/**
+	 * Starts syncing straight away with a token verified against this server within the
+	 * {@link VerifiedTokenStore} TTL; the handshake then re-checks it in the background.
+	 * Otherwise syncs are held until the handshake succeeds.
+	 */
+	private void restoreVerifiedToken() {
+		Boolean binary = hasApiToken() ? tokenStore.lookup(authService.getServerUrl(), config.apiToken()) : null;
+		if (binary == null) {
+			isAuthenticated = false;
+			syncPipeline.hold();
+			return;
+		}
+		authService.useVerifiedToken(config.apiToken(), binary);
+		isAuthenticated = true;
+		configManager.setConfiguration("oldschooldb", "authStatus", "✓ Verified - Connected");
+		log.info("Token was verified recently, syncing while it is re-checked");
+	}
+
+	private void refreshItemMappings() {
+		// Queued behind the startup load so the conditional headers come from the cached copy.
+		// Mappings are only a local convenience; failures are logged and the old copy kept
+		executor.execute(() -> authService.refreshItemMappings(itemMappings));
+	}
+
 	private void attemptAuthentication() {
 		// Prevent duplicate authentication attempts
 		if (authenticationAttempted) {
@@ -98,13 +258,33 @@ public class OldSchoolDBPlugin extends Plugin
 
 		authenticationAttempted = true;
 		
-		authService.authenticateToken(apiToken).thenAccept(success -> {
+		String serverUrl = authService.getServerUrl();
+		authService.authenticateToken(apiToken).thenAccept(result -> {
+			if (result == AuthResult.UNREACHABLE) {
+				// Says nothing about the token: a recently verified one stays in use, otherwise syncs stay held
+				log.warn("Failed to connect to OldSchoolDB server at: {}", serverUrl);
+				configManager.setConfiguration("oldschooldb", "authStatus", "⚠ Server unavailable - will retry");
+				authenticationAttempted = false; // Retried on the next login
+				return;
+			}
+
+			boolean success = result == AuthResult.VERIFIED;
+			boolean alreadyAuthenticated = isAuthenticated;
 			isAuthenticated = success;
+			tokenVerified = success;
 			if (success) {
 				log.info("Successfully authenticated with OldSchoolDB using API token");
+				tokenStore.put(serverUrl, apiToken, authService.isBinarySupported());
 				// Update status in config panel
 				configManager.setConfiguration("oldschooldb", "authStatus", "✓ Verified - Connected");
+				syncPipeline.setChannelEnabled(config.syncChannel());
+				// Send what was captured while waiting, then anything an outage or the last session left behind
+				syncPipeline.release();
+				syncPipeline.replayOutbox();
 				
+				if (alreadyAuthenticated) {
+					return; // Already syncing on the cached verification; no need to announce it
+				}
 				if (client.getGameState() == GameState.LOGGED_IN) {
 					client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", 
 						"OldSchoolDB: Token verified successfully! ✓", null);
@@ -114,6 +294,9 @@ public class OldSchoolDBPlugin extends Plugin
 			} else {
 				log.warn("Failed to authenticate with OldSchoolDB. Please check your API token.");
 				log.warn("Get a new token from: https://oldschooldb.com/plugin");
+				tokenStore.invalidate();
+				syncPipeline.setChannelEnabled(false);
+				syncPipeline.hold();
 				// Update status in config panel
 				configManager.setConfiguration("oldschooldb", "authStatus", "✗ Invalid - Check token");
 				authenticationAttempted = false; // Allow retry on failure
@@ -126,16 +309,93 @@ public class OldSchoolDBPlugin extends Plugin
 		});
 	}
 
+	private synchronized void updateConnectionStatus() {
+		AuthService service = authService;
+		if (service == null || !isAuthenticated) {
+			return;
+		}
+
+		List<CircuitBreaker> tripped = service.getTrippedBreakers();
+		if (tripped.isEmpty()) {
+			configManager.setConfiguration("oldschooldb", "authStatus", "✓ Verified - Connected");
+			return;
+		}
+
+		long retryInMs = 0;
+		for (CircuitBreaker breaker : tripped) {
+			retryInMs = Math.max(retryInMs, breaker.remainingOpenMs());
+		}
+		String status = retryInMs > 0
+			? "⚠ Server unavailable - retrying in " + (retryInMs + 999) / 1000 + "s"
+			: "⚠ Server unavailable - checking...";
+		configManager.setConfiguration("oldschooldb", "authStatus", status);
+		if (retryInMs > 0 && statusRefresh == null) {
+			// Breakers only report state changes, so count down here until the next one
+			statusRefresh = executor.schedule(this::refreshConnectionStatus, 1, TimeUnit.SECONDS);
+		}
+	}
+
+	private synchronized void refreshConnectionStatus() {
+		if (statusRefresh == null) {
+			return; // Cancelled by shutdown
+		}
+		statusRefresh = null;
+		updateConnectionStatus();
+	}
+
 	@Subscribe
 	public void onConfigChanged(ConfigChanged event)
 	{
 		if (event.getGroup().equals("oldschooldb")) {
-			if (event.getKey().equals("apiToken")) {
+			if (event.getKey().equals("requestCompression") || event.getKey().equals("compressionThreshold")) {
+				if (authService != null) {
+					authService.setCompression(config.requestCompression(), config.compressionThreshold());
+				}
+			} else if (event.getKey().equals("useLocalhost")) {
+				if (authService != null) {
+					// Queued syncs and the outbox carry over; they go to the new server once verified there
+					authService.setServerUrl(serverUrl());
+					configManager.setConfiguration("oldschooldb", "authStatus", "⏳ Verifying...");
+					authenticationAttempted = false;
+					isAuthenticated = false;
+					tokenVerified = false;
+					syncPipeline.setChannelEnabled(false); // Reconnected to the new server once verified there
+					syncPipeline.hold(); // Not sent to the new server until the token is verified there
+					attemptAuthentication();
+					refreshItemMappings();
+				}
+			} else if (event.getKey().equals("syncChannel")) {
+				// Otherwise the channel is opened once the token is verified
+				if (syncPipeline != null && tokenVerified) {
+					syncPipeline.setChannelEnabled(config.syncChannel());
+				}
+			} else if (event.getKey().equals("historyBudget") || event.getKey().equals("historyRetentionDays")) {
+				if (metrics != null) {
+					closeItemHistory();
+					openItemHistory();
+				}
+			} else if (event.getKey().equals("showMetricsPanel")) {
+				if (metrics != null) {
+					SwingUtilities.invokeLater(this::updateMetricsPanel);
+				}
+			} else if (event.getKey().equals("jfrEvents")) {
+				SyncEvents.setEnabled(config.jfrEvents());
+			} else if (event.getKey().equals("recordSessionTrace")) {
+				// Recording is fed from the client thread, so start and stop it there
+				clientThread.invokeLater(this::updateSessionRecorder);
+			} else if (event.getKey().equals("metricsExportInterval")) {
+				if (metricsExporter != null) {
+					scheduleMetricsExport();
+				}
+			} else if (event.getKey().equals("apiToken")) {
 				log.info("API token changed, verifying...");
 				// Update status to show verification in progress
 				configManager.setConfiguration("oldschooldb", "authStatus", "⏳ Verifying...");
 				authenticationAttempted = false; // Reset to allow new verification
 				isAuthenticated = false;
+				tokenVerified = false;
+				syncPipeline.setChannelEnabled(false);
+				syncPipeline.hold(); // Not sent with the old token; released once the new one is verified
 				attemptAuthentication();
 			} else if (event.getKey().equals("verifyToken")) {
 				boolean shouldVerify = Boolean.parseBoolean(event.getNewValue());
@@ -145,6 +405,9 @@ public class OldSchoolDBPlugin extends Plugin
 					configManager.setConfiguration("oldschooldb", "authStatus", "⏳ Verifying...");
 					authenticationAttempted = false; // Reset to allow new verification
 					isAuthenticated = false;
+					tokenVerified = false;
+					syncPipeline.setChannelEnabled(false);
+					syncPipeline.hold();
 					attemptAuthentication();
 					// Reset the checkbox after verification starts
 					configManager.setConfiguration("oldschooldb", "verifyToken", "false");
@@ -156,8 +419,25 @@ public class OldSchoolDBPlugin extends Plugin
 	@Subscribe
 	public void onGameStateChanged(GameStateChanged gameStateChanged)
 	{
+		if (sessionRecorder != null) {
+			sessionRecorder.gameStateChanged(gameStateChanged.getGameState());
+		}
+		if (geTracker != null && (gameStateChanged.getGameState() == GameState.LOGGING_IN
+			|| gameStateChanged.getGameState() == GameState.HOPPING))
+		{
+			// The client replays every GE slot after login; send them as one batch
+			geTracker.beginLogin();
+		}
+
+		if (gameStateChanged.getGameState() == GameState.LOGIN_SCREEN) {
+			sessionStartedAt = 0;
+		}
+
 		if (gameStateChanged.getGameState() == GameState.LOGGED_IN)
 		{
+			if (sessionStartedAt == 0) {
+				sessionStartedAt = System.currentTimeMillis();
+			}
 			client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", config.greeting(), null);
 			
 			// Show auth success message if authentication happened before login
@@ -167,8 +447,8 @@ public class OldSchoolDBPlugin extends Plugin
 				showAuthMessageOnLogin = false; // Only show once
 			}
 			
-			// Try to authenticate if we haven't already
-			if (!isAuthenticated && authService != null) {
+			// Try to authenticate if we haven't already, or only have a cached verification
+			if (!tokenVerified && authService != null) {
 				attemptAuthentication();
 			}
 		}
@@ -179,36 +459,42 @@ public class OldSchoolDBPlugin extends Plugin
 	{
 		currentAccountHash = client.getAccountHash();
 		log.info("Account hash updated: {}", currentAccountHash);
+		if (sessionRecorder != null) {
+			sessionRecorder.accountHashChanged(currentAccountHash);
+		}
 		
-		if (currentAccountHash != null && currentAccountHash != -1L && isAuthenticated) {
-			syncCurrentBankData();
+		if (containerSync != null && currentAccountHash != null && currentAccountHash != -1L && hasApiToken()) {
+			containerSync.request(ContainerType.BANK);
 		}
 	}
 
 	@Subscribe
 	public void onGrandExchangeOfferChanged(GrandExchangeOfferChanged event)
 	{
-		if (currentAccountHash != null && currentAccountHash != -1L && isAuthenticated) {
-			syncGrandExchangeOffer(event.getSlot(), event.getOffer());
+		if (sessionRecorder != null) {
+			sessionRecorder.offerChanged(event.getSlot(), event.getOffer());
+		}
+		if (currentAccountHash != null && currentAccountHash != -1L && hasApiToken()) {
+			geTracker.offer(currentAccountHash, event.getSlot(), event.getOffer());
 		}
 	}
 
 	@Subscribe
 	public void onItemContainerChanged(ItemContainerChanged event)
 	{
-		// Handle bank, inventory, and equipment changes
+		// Handle bank, inventory, and equipment changes. Only mark the container dirty here;
+		// onGameTick captures it, so a burst of events in one tick costs a single capture
+		if (sessionRecorder != null && isTrackedContainer(event.getContainerId())) {
+			sessionRecorder.containerChanged(event.getContainerId(), event.getItemContainer().getItems());
+		}
 		if (event.getContainerId() == InventoryID.BANK.getId()) {
 			// Update current account hash when bank changes (in case it wasn't set yet)
 			if (currentAccountHash == null || currentAccountHash == -1L) {
 				currentAccountHash = client.getAccountHash();
 			}
 			
-			if (currentAccountHash != null && currentAccountHash != -1L && isAuthenticated) {
-				long currentTime = System.currentTimeMillis();
-				if (currentTime - lastBankSyncTime >= SYNC_COOLDOWN_MS) {
-					lastBankSyncTime = currentTime;
-					syncCurrentBankData();
-				}
+			if (containerSync != null && currentAccountHash != null && currentAccountHash != -1L && hasApiToken()) {
+				containerSync.markDirty(ContainerType.BANK);
 			}
 		} else if (event.getContainerId() == InventoryID.INVENTORY.getId()) {
 			// Update current account hash when inventory changes (in case it wasn't set yet)
@@ -216,12 +502,8 @@ public class OldSchoolDBPlugin extends Plugin
 				currentAccountHash = client.getAccountHash();
 			}
 			
-			if (currentAccountHash != null && currentAccountHash != -1L && isAuthenticated) {
-				long currentTime = System.currentTimeMillis();
-				if (currentTime - lastInventorySyncTime >= SYNC_COOLDOWN_MS) {
-					lastInventorySyncTime = currentTime;
-					syncCurrentInventoryData();
-				}
+			if (containerSync != null && currentAccountHash != null && currentAccountHash != -1L && hasApiToken()) {
+				containerSync.markDirty(ContainerType.INVENTORY);
 			}
 		} else if (event.getContainerId() == InventoryID.EQUIPMENT.getId()) {
 			// Update current account hash when equipment changes (in case it wasn't set yet)
@@ -229,16 +511,85 @@ public class OldSchoolDBPlugin extends Plugin
 				currentAccountHash = client.getAccountHash();
 			}
 			
-			if (currentAccountHash != null && currentAccountHash != -1L && isAuthenticated) {
-				long currentTime = System.currentTimeMillis();
-				if (currentTime - lastEquipmentSyncTime >= SYNC_COOLDOWN_MS) {
-					lastEquipmentSyncTime = currentTime;
-					syncCurrentEquipmentData();
-				}
+			if (containerSync != null && currentAccountHash != null && currentAccountHash != -1L && hasApiToken()) {
+				containerSync.markDirty(ContainerType.EQUIPMENT);
 			}
 		}
 	}
 
+	@Subscribe
+	public void onGameTick(GameTick tick)
+	{
+		if (sessionRecorder != null) {
+			sessionRecorder.gameTick();
+		}
+		if (containerSync == null || !containerSync.hasDirty()) {
+			return;
+		}
+		if (currentAccountHash == null || currentAccountHash == -1L || !hasApiToken()) {
+			containerSync.clearDirty();
+			return;
+		}
+		containerSync.tick(client.getTickCount(), Math.max(1, config.captureTickInterval()));
+	}
+
+	/**
+	 * Copies {@code container} into a snapshot, or returns null if it has not changed since the last sync.
+	 */
+	private ItemSnapshot capture(long accountHash, ContainerType type, ItemContainer container) {
+		ContainerCaptureEvent event = SyncEvents.beginCapture();
+		long start = System.nanoTime();
+		ItemSnapshot snapshot = ItemSnapshot.capture(container);
+		metrics.recordCapture(type, System.nanoTime() - start);
+
+		boolean unchanged = syncPipeline.isUnchanged(accountHash, type, snapshot);
+		SyncEvents.endCapture(event, type, snapshot.size(), accountHash, unchanged);
+		if (unchanged) {
+			metrics.recordDropped(type);
+			return null;
+		}
+		if (itemHistory != null) {
+			ItemHistoryStore history = itemHistory;
+			int[] data = snapshot.getData();
+			long capturedAt = System.currentTimeMillis();
+			executor.execute(() -> history.append(accountHash, type, capturedAt, data));
+		}
+		return snapshot;
+	}
+
+	private long syncIntervalMs(ContainerType type) {
+		switch (type) {
+			case BANK:
+				return config.bankSyncInterval() * 1000L;
+			case INVENTORY:
+				return config.inventorySyncInterval() * 1000L;
+			case EQUIPMENT:
+				return config.equipmentSyncInterval() * 1000L;
+			default:
+				return 0;
+		}
+	}
+
+	private void syncContainer(ContainerType type) {
+		// Trailing edges run later, so re-check we can still sync
+		if (currentAccountHash == null || currentAccountHash == -1L || !hasApiToken()) {
+			return;
+		}
+		switch (type) {
+			case BANK:
+				syncCurrentBankData();
+				break;
+			case INVENTORY:
+				syncCurrentInventoryData();
+				break;
+			case EQUIPMENT:
+				syncCurrentEquipmentData();
+				break;
+			default:
+				break;
+		}
+	}
+
 	private void syncCurrentBankData() {
 		ItemContainer bank = client.getItemContainer(InventoryID.BANK);
 		if (bank == null) {
@@ -246,29 +597,41 @@ public class OldSchoolDBPlugin extends Plugin
 			return;
 		}
 
-		// Get items once to avoid multiple bank.getItems() calls
-		Item[] bankItems = bank.getItems();
-		int itemCount = bankItems.length;
-		
+		long accountHash = currentAccountHash;
+		ItemSnapshot snapshot = capture(accountHash, ContainerType.BANK, bank);
+		if (snapshot == null) {
+			log.debug("Bank unchanged since last sync, skipping");
+			return;
+		}
+		int itemCount = snapshot.size();
+		long bankValue = itemMappings.valueOf(snapshot);
+
 		log.info("Starting bank sync for account: {} with {} items", currentAccountHash, itemCount);
 		client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", 
 			"OldSchoolDB: Starting bank sync...", null);
 
-		authService.sendBankData(currentAccountHash, bankItems)
+		syncPipeline.syncContainer(accountHash, ContainerType.BANK, snapshot)
 			.thenAcceptAsync(success -> {
+				// On the executor that writes the history: reads it from disk, maybe decoding a segment
+				long sessionChange = bankValue > 0 && success ? sessionBankChange(accountHash, bankValue) : 0;
 				// Schedule UI update on client thread
 				clientThread.invokeLater(() -> {
 					if (success) {
 						log.info("Bank data synced successfully for account: {}", currentAccountHash);
+						String value = bankValue > 0 ? ", " + QuantityFormatter.quantityToStackSize(bankValue) + " gp" : "";
+						if (sessionChange != 0) {
+							value += ", " + (sessionChange > 0 ? "+" : "-")
+								+ QuantityFormatter.quantityToStackSize(Math.abs(sessionChange)) + " this session";
+						}
 						client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", 
-							"OldSchoolDB: Bank synced (" + itemCount + " items)", null);
+							"OldSchoolDB: Bank synced (" + itemCount + " items" + value + ")", null);
 					} else {
 						log.warn("Failed to sync bank data for account: {}", currentAccountHash);
 						client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", 
 							"OldSchoolDB: Bank sync failed - check connection", null);
 					}
 				});
-			})
+			}, executor)
 			.exceptionally(ex -> {
 				log.error("Exception during bank sync", ex);
 				// Schedule UI update on client thread
@@ -286,18 +649,28 @@ public class OldSchoolDBPlugin extends Plugin
 			return;
 		}
 
-		authService.sendInventoryData(currentAccountHash, inventory.getItems())
+		long accountHash = currentAccountHash;
+		ItemSnapshot snapshot = capture(accountHash, ContainerType.INVENTORY, inventory);
+		if (snapshot == null) {
+			return;
+		}
+		int itemCount = snapshot.size();
+		syncPipeline.syncContainer(accountHash, ContainerType.INVENTORY, snapshot)
 			.thenAccept(success -> {
 				if (success) {
 					log.debug("Inventory data synced successfully for account: {}", currentAccountHash);
 					// Only show message for inventory if it has items (to avoid spam)
-					if (inventory.getItems().length > 0) {
+					if (itemCount > 0) {
 						client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", 
-							"OldSchoolDB: Inventory synced (" + inventory.getItems().length + " items)", null);
+							"OldSchoolDB: Inventory synced (" + itemCount + " items)", null);
 					}
 				} else {
 					log.warn("Failed to sync inventory data for account: {}", currentAccountHash);
 				}
+			})
+			.exceptionally(ex -> {
+				log.warn("Inventory sync not sent for account: {}", accountHash, ex);
+				return null;
 			});
 	}
 
@@ -307,17 +680,17 @@ public class OldSchoolDBPlugin extends Plugin
 			return;
 		}
 
-		authService.sendEquipmentData(currentAccountHash, equipment.getItems())
+		long accountHash = currentAccountHash;
+		ItemSnapshot snapshot = capture(accountHash, ContainerType.EQUIPMENT, equipment);
+		if (snapshot == null) {
+			return;
+		}
+		// Snapshots only hold equipped slots
+		int equippedCount = snapshot.size();
+		syncPipeline.syncContainer(accountHash, ContainerType.EQUIPMENT, snapshot)
 			.thenAccept(success -> {
 				if (success) {
 					log.debug("Equipment data synced successfully for account: {}", currentAccountHash);
-					// Count non-null equipped items for the message
-					int equippedCount = 0;
-					for (Item item : equipment.getItems()) {
-						if (item.getId() != -1) {
-							equippedCount++;
-						}
-					}
 					if (equippedCount > 0) {
 						client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", 
 							"OldSchoolDB: Equipment synced (" + equippedCount + " items)", null);
@@ -325,31 +698,142 @@ public class OldSchoolDBPlugin extends Plugin
 				} else {
 					log.warn("Failed to sync equipment data for account: {}", currentAccountHash);
 				}
+			})
+			.exceptionally(ex -> {
+				log.warn("Equipment sync not sent for account: {}", accountHash, ex);
+				return null;
 			});
 	}
 
-	private void syncGrandExchangeOffer(int slot, GrandExchangeOffer offer) {
-		// Only sync if offer has meaningful data
-		if (offer.getItemId() <= 0) {
-			return;
-		}
-
-		authService.sendGrandExchangeOffer(currentAccountHash, slot, offer)
+	private CompletableFuture<Boolean> syncGrandExchangeOffer(SyncKey key, GrandExchangeOfferSnapshot offer) {
+		long accountHash = key.getAccountHash();
+		int slot = key.getSlot();
+		CompletableFuture<Boolean> result = syncPipeline.syncGrandExchangeOffer(accountHash, slot, offer);
+		result
 			.thenAccept(success -> {
 				if (success) {
 					log.debug("GE offer synced successfully for account: {}, slot: {}", currentAccountHash, slot);
 					
-					// Show message for significant trades (over 1M gp)
-					long tradeValue = (long) offer.getPrice() * offer.getTotalQuantity();
+					// Show message for significant trades (over 1M gp), valued at the guide price when known
+					int guidePrice = itemMappings.getPrice(offer.getItemId());
+					long tradeValue = (long) (guidePrice > 0 ? guidePrice : offer.getPrice()) * offer.getTotalQuantity();
 					if (tradeValue >= 1_000_000 && client.getGameState() == GameState.LOGGED_IN) {
 						String state = offer.getState().name().toLowerCase();
+						String name = itemMappings.getName(offer.getItemId());
 						client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", 
-							"OldSchoolDB: GE " + state + " synced (" + (tradeValue / 1_000_000) + "M gp)", null);
+							"OldSchoolDB: GE " + state + (name != null ? " " + name : "")
+								+ " synced (" + (tradeValue / 1_000_000) + "M gp)", null);
 					}
 				} else {
 					log.warn("Failed to sync GE offer for account: {}, slot: {}", currentAccountHash, slot);
 				}
+			})
+			.exceptionally(ex -> {
+				log.warn("GE offer sync not sent for account: {}, slot: {}", accountHash, slot, ex);
+				return null;
 			});
+		return result;
+	}
+
+	private void updateMetricsPanel()
+	{
+		if (config.showMetricsPanel() && navButton == null) {
+			navButton = NavigationButton.builder()
+				.tooltip("OldSchoolDB Sync")
+				.icon(OldSchoolDBPanel.createIcon())
+				.priority(10)
+				.panel(new OldSchoolDBPanel(metrics, gson))
+				.build();
+			clientToolbar.addNavigation(navButton);
+		} else if (!config.showMetricsPanel() && navButton != null) {
+			clientToolbar.removeNavigation(navButton);
+			navButton = null;
+		}
+	}
+
+	/**
+	 * How much the bank's value changed since login according to the local history, or 0 if unknown.
+	 */
+	private long sessionBankChange(long accountHash, long bankValue)
+	{
+		ItemHistoryStore history = itemHistory;
+		long since = sessionStartedAt;
+		if (history == null || since == 0) {
+			return 0;
+		}
+		Map<Integer, Integer> start = history.stateAt(accountHash, ContainerType.BANK, since);
+		long startValue = start != null ? itemMappings.valueOf(start) : -1;
+		return startValue >= 0 ? bankValue - startValue : 0;
+	}
+
+	private void openItemHistory()
+	{
+		int budgetMb = config.historyBudget();
+		if (budgetMb <= 0) {
+			return;
+		}
+		itemHistory = new ItemHistoryStore(new File(RuneLite.RUNELITE_DIR, "oldschooldb/history"),
+			budgetMb * 1024L * 1024L, TimeUnit.DAYS.toMillis(config.historyRetentionDays()));
+		ItemHistoryStore history = itemHistory;
+		historyCompaction = executor.scheduleWithFixedDelay(history::compact, 0, HISTORY_COMPACTION_MINUTES,
+			TimeUnit.MINUTES);
+	}
+
+	private void closeItemHistory()
+	{
+		if (historyCompaction != null) {
+			historyCompaction.cancel(false);
+			historyCompaction = null;
+		}
+		if (itemHistory != null) {
+			ItemHistoryStore history = itemHistory;
+			itemHistory = null;
+			executor.execute(() -> {
+				history.compact();
+				history.close();
+			});
+		}
+	}
+
+	private static boolean isTrackedContainer(int containerId)
+	{
+		return containerId == InventoryID.BANK.getId()
+			|| containerId == InventoryID.INVENTORY.getId()
+			|| containerId == InventoryID.EQUIPMENT.getId();
+	}
+
+	/**
+	 * Starts or stops the session trace to match the config. Runs on the client thread,
+	 * where the recorder is fed.
+	 */
+	private void updateSessionRecorder()
+	{
+		if (!config.recordSessionTrace()) {
+			stopSessionRecorder();
+		} else if (sessionRecorder == null) {
+			String name = "trace-" + LocalDateTime.now().format(TRACE_NAME_FORMAT) + ".bin";
+			sessionRecorder = new SessionRecorder(new File(RuneLite.RUNELITE_DIR, "oldschooldb/traces/" + name), executor);
+		}
+	}
+
+	private void stopSessionRecorder()
+	{
+		if (sessionRecorder != null) {
+			sessionRecorder.close();
+			sessionRecorder = null;
+		}
+	}
+
+	private void scheduleMetricsExport()
+	{
+		if (metricsExport != null) {
+			metricsExport.cancel(false);
+			metricsExport = null;
+		}
+		int minutes = config.metricsExportInterval();
+		if (minutes > 0) {
+			metricsExport = executor.scheduleAtFixedRate(metricsExporter::export, minutes, minutes, TimeUnit.MINUTES);
+		}
 	}
 
 	@Provides
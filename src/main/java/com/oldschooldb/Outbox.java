@@ -0,0 +1,269 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only log of snapshots that have not been acknowledged by the
+ * server yet, so nothing is lost when the backend is down, the player is offline
+ * or the client crashes.
+ *
+ * The log is split into segment files under the outbox directory. Each record is
+ * {@code [int length][int crc32][payload]} and is either an entry (a snapshot for
+ * a {@link SyncKey}) or an ack of an entry. Segments are memory-mapped for
+ * recovery; a record with a bad length or CRC ends that segment, which is how a
+ * write torn by a crash is discarded. Only the newest unacknowledged entry per key
+ * is live, and compaction rewrites just those into a fresh segment.
+ */
+@Slf4j
+public class Outbox implements Closeable {
+    private static final int SEGMENT_BYTES = 1024 * 1024;
+    private static final int MAX_SEGMENTS = 4;
+    private static final int MAX_RECORD_BYTES = 4 * 1024 * 1024;
+    private static final byte RECORD_ENTRY = 1;
+    private static final byte RECORD_ACK = 2;
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File directory;
+    private final Map<SyncKey, OutboxEntry> live = new HashMap<>();
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    private FileChannel active;
+    private long nextSequence = 1;
+
+    public Outbox(File directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory.toPath());
+        recover();
+        compact();
+    }
+
+    /**
+     * Durably records {@code data}, captured at {@code timestamp}, as the newest pending snapshot for {@code key}.
+     */
+    public synchronized OutboxEntry append(SyncKey key, long timestamp, int[] data) throws IOException {
+        OutboxEntry entry = new OutboxEntry(nextSequence++, key, timestamp, data);
+        write(encodeEntry(entry));
+        live.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Marks {@code entry} as delivered. Ignored if a newer snapshot for the same key is pending.
+     */
+    public synchronized void ack(OutboxEntry entry) {
+        OutboxEntry current = live.get(entry.getKey());
+        if (current == null || current.getSequence() > entry.getSequence()) {
+            return;
+        }
+        try {
+            write(encodeAck(entry.getKey(), entry.getSequence()));
+            live.remove(entry.getKey());
+        } catch (IOException e) {
+            log.warn("Failed to record outbox ack for {}", entry.getKey(), e);
+        }
+    }
+
+    /**
+     * Live entries, oldest first.
+     */
+    public synchronized List<OutboxEntry> pending() {
+        List<OutboxEntry> entries = new ArrayList<>(live.values());
+        entries.sort(Comparator.comparingLong(OutboxEntry::getSequence));
+        return entries;
+    }
+
+    public synchronized boolean isEmpty() {
+        return live.isEmpty();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (active != null) {
+            try {
+                active.close();
+            } catch (IOException e) {
+                log.debug("Failed to close outbox segment", e);
+            }
+            active = null;
+        }
+    }
+
+    /**
+     * Rewrites the live entries into a new segment and deletes all older segments.
+     * Always done after recovery, so appends never land behind a torn record.
+     */
+    public synchronized void compact() throws IOException {
+        List<File> old = new ArrayList<>(segments.values());
+        close();
+        openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        for (OutboxEntry entry : pending()) {
+            active.write(encodeEntry(entry));
+        }
+        active.force(true);
+
+        for (File file : old) {
+            if (!file.delete()) {
+                log.warn("Failed to delete compacted outbox segment {}", file);
+            }
+            segments.values().remove(file);
+        }
+        log.debug("Compacted outbox to {} pending entries", live.size());
+    }
+
+    private void write(ByteBuffer record) throws IOException {
+        if (active == null || active.size() + record.remaining() > SEGMENT_BYTES) {
+            if (segments.size() >= MAX_SEGMENTS) {
+                compact();
+            } else {
+                close();
+                openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+            }
+        }
+        while (record.hasRemaining()) {
+            active.write(record);
+        }
+        active.force(false);
+    }
+
+    private void openSegment(long id) throws IOException {
+        File file = new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        active = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segments.put(id, file);
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String id = file.getName().substring(SEGMENT_PREFIX.length(), file.getName().length() - SEGMENT_SUFFIX.length());
+            try {
+                segments.put(Long.parseLong(id), file);
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring unexpected outbox file {}", file);
+            }
+        }
+
+        Map<SyncKey, Long> acked = new HashMap<>();
+        for (File segment : segments.values()) {
+            long valid = readSegment(segment, acked);
+            if (valid < segment.length()) {
+                // Anything after a torn record is unreadable; compaction drops it with the segment
+                log.warn("Outbox segment {} is damaged after {} bytes", segment, valid);
+            }
+        }
+        live.entrySet().removeIf(e -> acked.getOrDefault(e.getKey(), 0L) >= e.getValue().getSequence());
+        log.debug("Recovered {} pending outbox entries from {} segments", live.size(), segments.size());
+    }
+
+    /**
+     * Replays one segment into {@link #live}, returning the length of its valid prefix.
+     */
+    private long readSegment(File file, Map<SyncKey, Long> acked) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= 8) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES || length > buffer.remaining()) {
+                    return start;
+                }
+
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return start;
+                }
+                buffer.position(buffer.position() + length);
+                readRecord(payload, acked);
+            }
+            return buffer.position();
+        }
+    }
+
+    private void readRecord(ByteBuffer payload, Map<SyncKey, Long> acked) {
+        byte recordType = payload.get();
+        long sequence = payload.getLong();
+        SyncKey key = SyncKey.of(payload.getLong(), ContainerType.values()[payload.get()], payload.getInt());
+        nextSequence = Math.max(nextSequence, sequence + 1);
+
+        if (recordType == RECORD_ACK) {
+            acked.merge(key, sequence, Math::max);
+            return;
+        }
+
+        long timestamp = payload.getLong();
+        int[] data = new int[payload.getInt()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = payload.getInt();
+        }
+        OutboxEntry current = live.get(key);
+        if (current == null || current.getSequence() < sequence) {
+            live.put(key, new OutboxEntry(sequence, key, timestamp, data));
+        }
+    }
+
+    private static ByteBuffer encodeEntry(OutboxEntry entry) {
+        int[] data = entry.getData();
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 8 + 1 + 4 + 8 + 4 + data.length * 4);
+        writeHeader(payload, RECORD_ENTRY, entry.getSequence(), entry.getKey());
+        payload.putLong(entry.getTimestamp());
+        payload.putInt(data.length);
+        for (int value : data) {
+            payload.putInt(value);
+        }
+        return frame(payload);
+    }
+
+    private static ByteBuffer encodeAck(SyncKey key, long sequence) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 8 + 1 + 4);
+        writeHeader(payload, RECORD_ACK, sequence, key);
+        return frame(payload);
+    }
+
+    private static void writeHeader(ByteBuffer payload, byte recordType, long sequence, SyncKey key) {
+        payload.put(recordType);
+        payload.putLong(sequence);
+        payload.putLong(key.getAccountHash());
+        payload.put((byte) key.getType().ordinal());
+        payload.putInt(key.getSlot());
+    }
+
+    private static ByteBuffer frame(ByteBuffer payload) {
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.remaining());
+        record.putInt(payload.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+        return record;
+    }
+}
@@ -0,0 +1,44 @@
+package com.oldschooldb;
+
+import lombok.Value;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.GrandExchangeOfferState;
+import net.runelite.api.Item;
+
+/**
+ * A snapshot waiting in the {@link Outbox} until the server has acknowledged it.
+ *
+ * For containers {@code data} holds item_id/quantity pairs of the non-empty slots;
+ * for a GE slot it holds the offer's fields.
+ */
+@Value
+public class OutboxEntry {
+    long sequence;
+    SyncKey key;
+    long timestamp;
+    int[] data;
+
+    public static int[] encodeOffer(GrandExchangeOffer offer) {
+        return new int[]{
+            offer.getItemId(),
+            offer.getQuantitySold(),
+            offer.getTotalQuantity(),
+            offer.getPrice(),
+            offer.getSpent(),
+            offer.getState().ordinal()
+        };
+    }
+
+    public Item[] toItems() {
+        Item[] items = new Item[data.length / 2];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Item(data[i * 2], data[i * 2 + 1]);
+        }
+        return items;
+    }
+
+    public GrandExchangeOfferSnapshot toOffer() {
+        return new GrandExchangeOfferSnapshot(data[0], data[1], data[2], data[3], data[4],
+            GrandExchangeOfferState.values()[data[5]]);
+    }
+}
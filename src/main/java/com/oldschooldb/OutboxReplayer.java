@@ -0,0 +1,102 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Re-sends pending {@link Outbox} entries, a few at a time with a pause between
+ * rounds so a reconnect does not flood the server. Replay stops at the first
+ * failed round and starts again the next time connectivity is seen to return.
+ * An entry the server refuses for good ({@link SyncRejectedException}) is dropped
+ * from the outbox by the sender and does not count as a failure.
+ */
+@Slf4j
+public class OutboxReplayer {
+    private static final int REPLAY_BATCH = 4;
+    private static final long REPLAY_INTERVAL_MS = 2000;
+
+    private final Outbox outbox;
+    private final ScheduledExecutorService timer;
+    private final Function<OutboxEntry, CompletableFuture<Boolean>> sender;
+    private boolean running = false;
+    private boolean offline = false;
+
+    public OutboxReplayer(Outbox outbox, ScheduledExecutorService timer,
+                          Function<OutboxEntry, CompletableFuture<Boolean>> sender) {
+        this.outbox = outbox;
+        this.timer = timer;
+        this.sender = sender;
+    }
+
+    /**
+     * Called with the outcome of every sync; a success after a failure triggers a replay.
+     */
+    public void onSyncResult(boolean success) {
+        boolean reconnected;
+        synchronized (this) {
+            reconnected = success && offline;
+            offline = !success;
+        }
+        if (reconnected) {
+            log.info("OldSchoolDB reachable again, replaying outbox");
+            replay();
+        }
+    }
+
+    /**
+     * Starts replaying everything currently pending, unless a replay is already running.
+     */
+    public void replay() {
+        long ceiling;
+        synchronized (this) {
+            if (running || outbox.isEmpty()) {
+                return;
+            }
+            running = true;
+            List<OutboxEntry> pending = outbox.pending();
+            // Only replay what was pending when we started; newer entries have their own sync in flight
+            ceiling = pending.get(pending.size() - 1).getSequence();
+        }
+        log.debug("Replaying outbox up to sequence {}", ceiling);
+        round(ceiling);
+    }
+
+    private void round(long ceiling) {
+        List<OutboxEntry> batch = new ArrayList<>(REPLAY_BATCH);
+        for (OutboxEntry entry : outbox.pending()) {
+            if (entry.getSequence() > ceiling || batch.size() == REPLAY_BATCH) {
+                break;
+            }
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            finish();
+            return;
+        }
+
+        List<CompletableFuture<Boolean>> sends = new ArrayList<>(batch.size());
+        for (OutboxEntry entry : batch) {
+            sends.add(sender.apply(entry).exceptionally(SyncRejectedException::isCause));
+        }
+        CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            for (CompletableFuture<Boolean> send : sends) {
+                if (!send.join()) {
+                    log.debug("Outbox replay stopped, server still unreachable");
+                    finish();
+                    return;
+                }
+            }
+            timer.schedule(() -> round(ceiling), REPLAY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private synchronized void finish() {
+        running = false;
+    }
+}
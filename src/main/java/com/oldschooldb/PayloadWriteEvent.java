@@ -0,0 +1,38 @@
+package com.oldschooldb;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A request body streamed to the connection. Compressed requests produce two nested
+ * events: the compressed body, and inside it the raw payload being serialized.
+ */
+@Name("com.oldschooldb.PayloadWrite")
+@Label("Payload Serialized")
+@Category({"OldSchoolDB", "Sync"})
+@Description("Time spent serializing (and compressing) a sync payload onto the request")
+@StackTrace(false)
+class PayloadWriteEvent extends Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Stage")
+    @Description("raw for the serialized payload, or the compression codec")
+    String stage;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Account Hash")
+    long accountHash;
+
+    @Label("Item Count")
+    @Description("Items or offers in the payload")
+    int itemCount;
+}
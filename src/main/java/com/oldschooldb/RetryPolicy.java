@@ -0,0 +1,57 @@
+package com.oldschooldb;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded exponential backoff with full jitter for idempotent sync requests.
+ */
+public final class RetryPolicy {
+    public static final int MAX_ATTEMPTS = 3;
+    public static final long BASE_DELAY_MS = 500;
+    public static final long MAX_DELAY_MS = 8_000;
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * Delay before the attempt after {@code attempt} (1-based): uniform in [0, min(max, base * 2^(attempt-1))].
+     */
+    public static long delayMs(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * Whether the server refused the payload itself, so sending it again, now or later, would be
+     * refused too. Auth failures and timeouts are not: the same payload can succeed after them.
+     */
+    public static boolean isRejected(int status) {
+        return status >= 400 && status < 500 && status != 401 && status != 403 && status != 408 && status != 429;
+    }
+
+    /**
+     * Parses a Retry-After header (delta-seconds or HTTP-date) into milliseconds, or 0 if absent or unreadable.
+     */
+    public static long parseRetryAfter(String header) {
+        if (header == null || header.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(header.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+}
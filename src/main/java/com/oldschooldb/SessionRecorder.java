@@ -0,0 +1,192 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.GameState;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.Item;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the events the sync logic reacts to into a compact binary trace, so a session
+ * can be replayed later (see {@code SessionTraceReader}).
+ *
+ * <pre>
+ * header: i32 magic "OSTR", u8 version, i64 start time (epoch ms)
+ * record: u8 kind, varint microseconds since the previous record, then per kind:
+ *   CONTAINER   varint container id, varint slot count, per slot varint (item id + 1), varint quantity
+ *   GE_OFFER    varint slot, varint item id, varint sold, varint total, varint price, varint spent,
+ *               u8 length + UTF-8 state name
+ *   ACCOUNT     i64 account hash
+ *   GAME_STATE  u8 length + UTF-8 state name
+ *   GAME_TICK   nothing
+ * </pre>
+ *
+ * Records are encoded in memory on the client thread and handed to {@code writer} once
+ * per game tick, so the client thread never touches the disk; the file is also created
+ * and opened on {@code writer}, which must run tasks one at a time in order. Recording
+ * stops once the trace reaches {@link #MAX_TRACE_BYTES}.
+ */
+@Slf4j
+public class SessionRecorder implements Closeable {
+    static final int MAGIC = 0x4f535452; // "OSTR"
+    static final int VERSION = 1;
+    static final int CONTAINER = 1;
+    static final int GE_OFFER = 2;
+    static final int ACCOUNT = 3;
+    static final int GAME_STATE = 4;
+    static final int GAME_TICK = 5;
+    static final long MAX_TRACE_BYTES = 64L * 1024 * 1024;
+
+    private final File file;
+    private final Executor writer;
+    private BufferedSink out; // Only used on the writer, null if the file could not be opened
+    private Buffer pending = new Buffer();
+    private long lastNanos = System.nanoTime();
+    private long written;
+    private boolean full;
+
+    public SessionRecorder(File file, Executor writer) {
+        this.file = file;
+        this.writer = writer;
+        long startedAt = System.currentTimeMillis();
+        writer.execute(() -> {
+            try {
+                Files.createDirectories(file.getParentFile().toPath());
+                BufferedSink sink = Okio.buffer(Okio.sink(file));
+                sink.writeInt(MAGIC);
+                sink.writeByte(VERSION);
+                sink.writeLong(startedAt);
+                out = sink;
+                log.info("Recording session trace to {}", file);
+            } catch (IOException e) {
+                log.warn("Could not start session trace {}", file, e);
+            }
+        });
+    }
+
+    public void containerChanged(int containerId, Item[] items) {
+        if (begin(CONTAINER)) {
+            writeVarInt(containerId);
+            writeVarInt(items.length);
+            for (Item item : items) {
+                writeVarInt(item.getId() + 1);
+                writeVarInt(Math.max(0, item.getQuantity()));
+            }
+        }
+    }
+
+    public void offerChanged(int slot, GrandExchangeOffer offer) {
+        if (begin(GE_OFFER)) {
+            writeVarInt(slot);
+            writeVarInt(Math.max(0, offer.getItemId()));
+            writeVarInt(offer.getQuantitySold());
+            writeVarInt(offer.getTotalQuantity());
+            writeVarInt(offer.getPrice());
+            writeVarInt(offer.getSpent());
+            writeName(offer.getState() == null ? "EMPTY" : offer.getState().name());
+        }
+    }
+
+    public void accountHashChanged(long accountHash) {
+        if (begin(ACCOUNT)) {
+            pending.writeLong(accountHash);
+        }
+    }
+
+    public void gameStateChanged(GameState state) {
+        if (begin(GAME_STATE)) {
+            writeName(state.name());
+        }
+    }
+
+    /**
+     * Records the tick and hands everything recorded since the last one to the writer.
+     */
+    public void gameTick() {
+        begin(GAME_TICK);
+        flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        writer.execute(() -> {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+                log.info("Session trace written to {} ({} bytes)", file, written);
+            } catch (IOException e) {
+                log.warn("Failed to close session trace {}", file, e);
+            }
+        });
+    }
+
+    private boolean begin(int kind) {
+        if (full) {
+            return false;
+        }
+        long now = System.nanoTime();
+        pending.writeByte(kind);
+        writeVarLong(TimeUnit.NANOSECONDS.toMicros(now - lastNanos));
+        lastNanos = now;
+        return true;
+    }
+
+    private void flush() {
+        if (pending.size() == 0 || full) {
+            return;
+        }
+        Buffer chunk = pending;
+        pending = new Buffer();
+        written += chunk.size();
+        if (written >= MAX_TRACE_BYTES) {
+            full = true;
+            log.warn("Session trace {} reached {} bytes, recording stopped", file, MAX_TRACE_BYTES);
+        }
+        writer.execute(() -> {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.writeAll(chunk);
+                out.emit();
+            } catch (IOException e) {
+                log.warn("Failed to write session trace {}", file, e);
+            }
+        });
+    }
+
+    private void writeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        pending.writeByte(bytes.length);
+        pending.write(bytes);
+    }
+
+    private void writeVarInt(int value) {
+        try {
+            BinaryPayloadWriter.writeVarInt(pending, value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In-memory buffer
+        }
+    }
+
+    private void writeVarLong(long value) {
+        try {
+            BinaryPayloadWriter.writeVarLong(pending, value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
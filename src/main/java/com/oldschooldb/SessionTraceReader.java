@@ -0,0 +1,119 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+import lombok.Value;
+import net.runelite.api.GrandExchangeOfferState;
+import net.runelite.api.Item;
+import okio.BufferedSource;
+import okio.Okio;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a trace written by {@link SessionRecorder}, one event at a time.
+ */
+public class SessionTraceReader implements Closeable {
+    public enum Kind {
+        CONTAINER,
+        GE_OFFER,
+        ACCOUNT,
+        GAME_STATE,
+        GAME_TICK
+    }
+
+    /**
+     * One recorded event. Only the fields for its {@link Kind} are set.
+     */
+    @Value
+    public static class Event {
+        Kind kind;
+        long offsetMicros; // Since the start of the trace
+        int containerId;
+        Item[] items;
+        int slot;
+        GrandExchangeOfferSnapshot offer;
+        long accountHash;
+        String gameState;
+    }
+
+    private final BufferedSource in;
+    @Getter
+    private final long startedAt;
+    private long offsetMicros;
+
+    public SessionTraceReader(File file) throws IOException {
+        this.in = Okio.buffer(Okio.source(file));
+        if (in.readInt() != SessionRecorder.MAGIC || in.readByte() != SessionRecorder.VERSION) {
+            in.close();
+            throw new IOException("Not a session trace: " + file);
+        }
+        this.startedAt = in.readLong();
+    }
+
+    /**
+     * The next event, or null at the end of the trace. A record cut short by a crash ends the trace.
+     */
+    public Event next() throws IOException {
+        if (in.exhausted()) {
+            return null;
+        }
+        try {
+            int kind = in.readByte();
+            offsetMicros += readVarLong();
+            switch (kind) {
+                case SessionRecorder.CONTAINER: {
+                    int containerId = readVarInt();
+                    Item[] items = new Item[readVarInt()];
+                    for (int i = 0; i < items.length; i++) {
+                        items[i] = new Item(readVarInt() - 1, readVarInt());
+                    }
+                    return new Event(Kind.CONTAINER, offsetMicros, containerId, items, 0, null, 0, null);
+                }
+                case SessionRecorder.GE_OFFER: {
+                    int slot = readVarInt();
+                    GrandExchangeOfferSnapshot offer = new GrandExchangeOfferSnapshot(readVarInt(), readVarInt(),
+                        readVarInt(), readVarInt(), readVarInt(), GrandExchangeOfferState.valueOf(readName()));
+                    return new Event(Kind.GE_OFFER, offsetMicros, 0, null, slot, offer, 0, null);
+                }
+                case SessionRecorder.ACCOUNT:
+                    return new Event(Kind.ACCOUNT, offsetMicros, 0, null, 0, null, in.readLong(), null);
+                case SessionRecorder.GAME_STATE:
+                    return new Event(Kind.GAME_STATE, offsetMicros, 0, null, 0, null, 0, readName());
+                case SessionRecorder.GAME_TICK:
+                    return new Event(Kind.GAME_TICK, offsetMicros, 0, null, 0, null, 0, null);
+                default:
+                    throw new IOException("Unknown trace record kind " + kind);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readName() throws IOException {
+        return in.readString(in.readByte() & 0xff, StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.Item;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Updates for one account and {@link SyncLane} gathered into a single
+ * {@code /api/plugin/sync/batch} request, with the futures waiting on each section's result.
+ * Each section keeps the time its snapshot was captured; the batch's {@link #getTimestamp()
+ * timestamp} is the newest of them.
+ */
+@Getter
+public class SyncBatch {
+    public static final String BANK = "bank";
+    public static final String BANK_DELTA = "bank_delta";
+    public static final String INVENTORY = "inventory";
+    public static final String EQUIPMENT = "equipment";
+    public static final String GRAND_EXCHANGE = "ge";
+
+    private final long accountHash;
+    private final SyncLane lane;
+
+    private long timestamp;
+
+    private long bankTimestamp;
+    private Item[] bankItems;
+    private CompletableFuture<BankSyncResult> bankResult;
+
+    private Long bankBaseVersion;
+    private BankDelta bankDelta;
+    private CompletableFuture<BankSyncResult> bankDeltaResult;
+
+    private long inventoryTimestamp;
+    private Item[] inventoryItems;
+    private CompletableFuture<Boolean> inventoryResult;
+
+    private long equipmentTimestamp;
+    private Item[] equipmentItems;
+    private CompletableFuture<Boolean> equipmentResult;
+
+    private final Map<Integer, Long> grandExchangeTimestamps = new TreeMap<>();
+    private final Map<Integer, GrandExchangeOffer> grandExchangeOffers = new TreeMap<>();
+    private final Map<Integer, CompletableFuture<Boolean>> grandExchangeResults = new TreeMap<>();
+
+    public SyncBatch(long accountHash, SyncLane lane) {
+        this.accountHash = accountHash;
+        this.lane = lane;
+    }
+
+    /**
+     * Whether the batch already holds an update that the given one would overwrite.
+     */
+    boolean hasBank() {
+        return bankItems != null || bankDelta != null;
+    }
+
+    CompletableFuture<BankSyncResult> setBank(long capturedAt, Item[] items) {
+        bankTimestamp = captured(capturedAt);
+        bankItems = items;
+        bankResult = new CompletableFuture<>();
+        return bankResult;
+    }
+
+    CompletableFuture<BankSyncResult> setBankDelta(long capturedAt, long baseVersion, BankDelta delta) {
+        bankTimestamp = captured(capturedAt);
+        bankBaseVersion = baseVersion;
+        bankDelta = delta;
+        bankDeltaResult = new CompletableFuture<>();
+        return bankDeltaResult;
+    }
+
+    CompletableFuture<Boolean> setInventory(long capturedAt, Item[] items) {
+        inventoryTimestamp = captured(capturedAt);
+        inventoryItems = items;
+        inventoryResult = new CompletableFuture<>();
+        return inventoryResult;
+    }
+
+    CompletableFuture<Boolean> setEquipment(long capturedAt, Item[] items) {
+        equipmentTimestamp = captured(capturedAt);
+        equipmentItems = items;
+        equipmentResult = new CompletableFuture<>();
+        return equipmentResult;
+    }
+
+    CompletableFuture<Boolean> addGrandExchangeOffer(long capturedAt, int slot, GrandExchangeOffer offer) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        grandExchangeTimestamps.put(slot, captured(capturedAt));
+        grandExchangeOffers.put(slot, offer);
+        grandExchangeResults.put(slot, result);
+        return result;
+    }
+
+    private long captured(long capturedAt) {
+        timestamp = Math.max(timestamp, capturedAt);
+        return capturedAt;
+    }
+
+    /**
+     * Number of items, delta entries and offers across all sections.
+     */
+    public int entryCount() {
+        return (bankItems != null ? bankItems.length : 0)
+            + (bankDelta != null ? bankDelta.size() : 0)
+            + (inventoryItems != null ? inventoryItems.length : 0)
+            + (equipmentItems != null ? equipmentItems.length : 0)
+            + grandExchangeOffers.size();
+    }
+
+    public int size() {
+        return (bankItems != null ? 1 : 0)
+            + (bankDelta != null ? 1 : 0)
+            + (inventoryItems != null ? 1 : 0)
+            + (equipmentItems != null ? 1 : 0)
+            + grandExchangeOffers.size();
+    }
+}
@@ -0,0 +1,76 @@
+package com.oldschooldb;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.Value;
+
+/**
+ * Response to a combined sync request. {@code results} holds one entry per section,
+ * each with the HTTP-style status the server gave that section. {@code REJECTED} means
+ * the server refused the request as a whole with a status that retrying cannot fix.
+ */
+@Value
+public class SyncBatchResult {
+    public enum Status {
+        OK,
+        UNSUPPORTED,
+        REJECTED,
+        FAILED
+    }
+
+    Status status;
+    JsonObject results;
+
+    public static SyncBatchResult ok(JsonObject results) {
+        return new SyncBatchResult(Status.OK, results);
+    }
+
+    public static SyncBatchResult unsupported() {
+        return new SyncBatchResult(Status.UNSUPPORTED, null);
+    }
+
+    public static SyncBatchResult rejected() {
+        return new SyncBatchResult(Status.REJECTED, null);
+    }
+
+    public static SyncBatchResult failed() {
+        return new SyncBatchResult(Status.FAILED, null);
+    }
+
+    /**
+     * Status code the server gave {@code section}, or -1 if the section is missing.
+     */
+    public int sectionStatus(String section) {
+        return statusOf(section(section));
+    }
+
+    public int grandExchangeStatus(int slot) {
+        JsonObject offers = section(SyncBatch.GRAND_EXCHANGE);
+        return offers == null || !offers.has(String.valueOf(slot)) || !offers.get(String.valueOf(slot)).isJsonObject()
+            ? -1
+            : statusOf(offers.getAsJsonObject(String.valueOf(slot)));
+    }
+
+    public Long sectionVersion(String section) {
+        JsonObject result = section(section);
+        if (result == null || !result.has("version") || result.get("version").isJsonNull()) {
+            return null;
+        }
+        return result.get("version").getAsLong();
+    }
+
+    private JsonObject section(String section) {
+        if (results == null) {
+            return null;
+        }
+        JsonElement result = results.get(section);
+        return result != null && result.isJsonObject() ? result.getAsJsonObject() : null;
+    }
+
+    private static int statusOf(JsonObject result) {
+        if (result == null || !result.has("status")) {
+            return -1;
+        }
+        return result.get("status").getAsInt();
+    }
+}
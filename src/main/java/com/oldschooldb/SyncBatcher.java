@@ -0,0 +1,264 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.Item;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Gathers container and GE updates that arrive within a short window into a single
+ * {@code /api/plugin/sync/batch} request per account, then hands each caller the
+ * result for its own section. If the server does not support batching, every
+ * section is sent through the individual endpoints instead.
+ *
+ * Each {@link SyncLane} gets its own batches, so a GE offer never rides along with a
+ * bank snapshot; expedited batches also close after a shorter window. A bank big enough
+ * for a {@link ChunkedBankUpload} is never batched.
+ *
+ * While the {@link SyncChannel} is open, batches go over it instead of HTTP, with a much
+ * shorter window since each message costs little more than its body.
+ */
+@Slf4j
+public class SyncBatcher implements SyncTransport {
+    private static final long BATCH_WINDOW_MS = 250;
+    private static final long EXPEDITED_BATCH_WINDOW_MS = 50;
+    private static final long CHANNEL_BATCH_WINDOW_MS = 20;
+
+    private final AuthService authService;
+    private final ScheduledExecutorService timer;
+    private final SyncChannel channel;
+    private final Map<SyncLane, Map<Long, SyncBatch>> pending = new EnumMap<>(SyncLane.class);
+    private volatile boolean batchSupported = true;
+
+    /**
+     * @param channel sends batches while it is open; null to always use HTTP
+     */
+    public SyncBatcher(AuthService authService, ScheduledExecutorService timer, SyncChannel channel) {
+        this.authService = authService;
+        this.timer = timer;
+        this.channel = channel;
+        for (SyncLane lane : SyncLane.values()) {
+            pending.put(lane, new HashMap<>());
+        }
+    }
+
+    @Override
+    public CompletableFuture<BankSyncResult> sendBankData(Long accountHash, long timestamp, Item[] bankItems) {
+        if (!batchSupported || authService.isChunked(bankItems)) {
+            return authService.sendBankData(accountHash, timestamp, bankItems);
+        }
+        return add(accountHash, SyncLane.BULK, SyncBatch::hasBank, batch -> batch.setBank(timestamp, bankItems));
+    }
+
+    @Override
+    public CompletableFuture<BankSyncResult> sendBankDelta(Long accountHash, long timestamp, long baseVersion, BankDelta delta) {
+        if (!batchSupported) {
+            return authService.sendBankDelta(accountHash, timestamp, baseVersion, delta);
+        }
+        return add(accountHash, SyncLane.BULK, SyncBatch::hasBank, batch -> batch.setBankDelta(timestamp, baseVersion, delta));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendInventoryData(Long accountHash, long timestamp, Item[] inventoryItems) {
+        if (!batchSupported) {
+            return authService.sendInventoryData(accountHash, timestamp, inventoryItems);
+        }
+        return add(accountHash, SyncLane.BULK, batch -> batch.getInventoryItems() != null,
+            batch -> batch.setInventory(timestamp, inventoryItems));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendEquipmentData(Long accountHash, long timestamp, Item[] equipmentItems) {
+        if (!batchSupported) {
+            return authService.sendEquipmentData(accountHash, timestamp, equipmentItems);
+        }
+        return add(accountHash, SyncLane.EXPEDITED, batch -> batch.getEquipmentItems() != null,
+            batch -> batch.setEquipment(timestamp, equipmentItems));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendGrandExchangeOffer(Long accountHash, long timestamp, int slot,
+                                                             GrandExchangeOffer offer) {
+        if (!batchSupported) {
+            return authService.sendGrandExchangeOffer(accountHash, timestamp, slot, offer);
+        }
+        return add(accountHash, SyncLane.EXPEDITED, batch -> batch.getGrandExchangeOffers().containsKey(slot),
+            batch -> batch.addGrandExchangeOffer(timestamp, slot, offer));
+    }
+
+    /**
+     * Sends every batch still waiting for its window to close.
+     */
+    public void flushAll() {
+        List<SyncBatch> batches = new ArrayList<>();
+        synchronized (this) {
+            for (Map<Long, SyncBatch> batchesInLane : pending.values()) {
+                batches.addAll(batchesInLane.values());
+                batchesInLane.clear();
+            }
+        }
+        for (SyncBatch batch : batches) {
+            send(batch);
+        }
+    }
+
+    private <T> CompletableFuture<T> add(long accountHash, SyncLane lane, Function<SyncBatch, Boolean> occupied,
+                                         Function<SyncBatch, CompletableFuture<T>> section) {
+        SyncBatch full = null;
+        CompletableFuture<T> result;
+        synchronized (this) {
+            Map<Long, SyncBatch> batches = pending.get(lane);
+            SyncBatch batch = batches.get(accountHash);
+            if (batch != null && occupied.apply(batch)) {
+                // Never merge two updates of the same section; send what we have and start over
+                full = batches.remove(accountHash);
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new SyncBatch(accountHash, lane);
+                batches.put(accountHash, batch);
+                SyncBatch scheduled = batch;
+                long window = channel != null && channel.isOpen() ? CHANNEL_BATCH_WINDOW_MS
+                    : lane == SyncLane.EXPEDITED ? EXPEDITED_BATCH_WINDOW_MS : BATCH_WINDOW_MS;
+                timer.schedule(() -> flush(scheduled), window, TimeUnit.MILLISECONDS);
+            }
+            result = section.apply(batch);
+        }
+        if (full != null) {
+            send(full);
+        }
+        return result;
+    }
+
+    private void flush(SyncBatch batch) {
+        synchronized (this) {
+            Map<Long, SyncBatch> batches = pending.get(batch.getLane());
+            if (batches.get(batch.getAccountHash()) != batch) {
+                return; // Already sent
+            }
+            batches.remove(batch.getAccountHash());
+        }
+        send(batch);
+    }
+
+    private void send(SyncBatch batch) {
+        if (!batchSupported) {
+            sendIndividually(batch);
+            return;
+        }
+
+        CompletableFuture<SyncBatchResult> sent = channel != null ? channel.send(batch) : null;
+        if (sent == null) {
+            sent = authService.sendBatch(batch);
+        }
+        sent.whenComplete((result, ex) -> {
+            if (ex != null) {
+                complete(batch, SyncBatchResult.failed());
+            } else if (result.getStatus() == SyncBatchResult.Status.UNSUPPORTED) {
+                batchSupported = false;
+                sendIndividually(batch);
+            } else if (result.getStatus() == SyncBatchResult.Status.REJECTED) {
+                // The individual endpoints tell which section the server refuses
+                sendIndividually(batch);
+            } else {
+                complete(batch, result);
+            }
+        });
+    }
+
+    /**
+     * Hands each section its result. A section the server refused for good fails with a
+     * {@link SyncRejectedException}, as the individual endpoints do.
+     */
+    private void complete(SyncBatch batch, SyncBatchResult result) {
+        if (batch.getBankResult() != null) {
+            int status = result.sectionStatus(SyncBatch.BANK);
+            if (!rejected(batch.getBankResult(), SyncBatch.BANK, status)) {
+                batch.getBankResult().complete(isSuccess(status)
+                    ? BankSyncResult.synced(result.sectionVersion(SyncBatch.BANK))
+                    : BankSyncResult.failed());
+            }
+        }
+        if (batch.getBankDeltaResult() != null) {
+            int status = result.sectionStatus(SyncBatch.BANK_DELTA);
+            if (isSuccess(status)) {
+                batch.getBankDeltaResult().complete(BankSyncResult.synced(result.sectionVersion(SyncBatch.BANK_DELTA)));
+            } else if (status == 409 || status == 412) {
+                batch.getBankDeltaResult().complete(BankSyncResult.baseRejected());
+            } else if (!rejected(batch.getBankDeltaResult(), SyncBatch.BANK_DELTA, status)) {
+                batch.getBankDeltaResult().complete(BankSyncResult.failed());
+            }
+        }
+        if (batch.getInventoryResult() != null) {
+            complete(batch.getInventoryResult(), SyncBatch.INVENTORY, result.sectionStatus(SyncBatch.INVENTORY));
+        }
+        if (batch.getEquipmentResult() != null) {
+            complete(batch.getEquipmentResult(), SyncBatch.EQUIPMENT, result.sectionStatus(SyncBatch.EQUIPMENT));
+        }
+        for (Map.Entry<Integer, CompletableFuture<Boolean>> entry : batch.getGrandExchangeResults().entrySet()) {
+            complete(entry.getValue(), SyncBatch.GRAND_EXCHANGE, result.grandExchangeStatus(entry.getKey()));
+        }
+    }
+
+    private static void complete(CompletableFuture<Boolean> section, String name, int status) {
+        if (!rejected(section, name, status)) {
+            section.complete(isSuccess(status));
+        }
+    }
+
+    private static boolean rejected(CompletableFuture<?> section, String name, int status) {
+        if (!RetryPolicy.isRejected(status)) {
+            return false;
+        }
+        section.completeExceptionally(new SyncRejectedException(name, status));
+        return true;
+    }
+
+    private void sendIndividually(SyncBatch batch) {
+        long accountHash = batch.getAccountHash();
+        if (batch.getBankResult() != null) {
+            forward(authService.sendBankData(accountHash, batch.getBankTimestamp(), batch.getBankItems()),
+                batch.getBankResult());
+        }
+        if (batch.getBankDeltaResult() != null) {
+            forward(authService.sendBankDelta(accountHash, batch.getBankTimestamp(), batch.getBankBaseVersion(),
+                batch.getBankDelta()), batch.getBankDeltaResult());
+        }
+        if (batch.getInventoryResult() != null) {
+            forward(authService.sendInventoryData(accountHash, batch.getInventoryTimestamp(), batch.getInventoryItems()),
+                batch.getInventoryResult());
+        }
+        if (batch.getEquipmentResult() != null) {
+            forward(authService.sendEquipmentData(accountHash, batch.getEquipmentTimestamp(), batch.getEquipmentItems()),
+                batch.getEquipmentResult());
+        }
+        for (Map.Entry<Integer, GrandExchangeOffer> entry : batch.getGrandExchangeOffers().entrySet()) {
+            forward(authService.sendGrandExchangeOffer(accountHash,
+                batch.getGrandExchangeTimestamps().get(entry.getKey()), entry.getKey(), entry.getValue()),
+                batch.getGrandExchangeResults().get(entry.getKey()));
+        }
+    }
+
+    private static <T> void forward(CompletableFuture<T> from, CompletableFuture<T> to) {
+        from.whenComplete((value, ex) -> {
+            if (ex != null) {
+                to.completeExceptionally(ex);
+            } else {
+                to.complete(value);
+            }
+        });
+    }
+
+    private static boolean isSuccess(int status) {
+        return status >= 200 && status < 300;
+    }
+}
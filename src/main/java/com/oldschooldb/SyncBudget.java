@@ -0,0 +1,183 @@
+package com.oldschooldb;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often each container may be synced, set by the server and adjusted AIMD-style
+ * in between.
+ *
+ * The server can send a per-container minimum interval and maximum payload size in
+ * the handshake ({@code limits}) and on any sync response ({@code X-Sync-Min-Interval},
+ * {@code X-Sync-Max-Payload}). On top of that each {@link SyncLane} has a backoff factor
+ * that scales the configured intervals of its containers: a slow, throttled or failed
+ * response doubles it, and each fast success shrinks it by {@link #DECREASE_STEP}. Slow
+ * bank uploads therefore never stretch the GE or equipment windows. Without a server
+ * minimum the factor never drops below 1, so the configured interval is the fastest the
+ * plugin syncs; with one the plugin may sync faster than configured, down to that minimum.
+ */
+@Slf4j
+public class SyncBudget {
+    static final long TARGET_LATENCY_MS = 2000; // Slower responses count as congestion
+    static final double DECREASE_STEP = 0.05;
+    static final double MIN_FACTOR = 0.25;
+    static final double MAX_FACTOR = 8;
+
+    private final Map<ContainerType, Limit> limits = new EnumMap<>(ContainerType.class);
+    private final Map<SyncLane, Double> factors = new EnumMap<>(SyncLane.class);
+
+    private static class Limit {
+        long minIntervalMs = -1;
+        long maxPayloadBytes = -1;
+    }
+
+    public SyncBudget() {
+        for (ContainerType type : ContainerType.values()) {
+            limits.put(type, new Limit());
+        }
+        for (SyncLane lane : SyncLane.values()) {
+            factors.put(lane, 1.0);
+        }
+    }
+
+    /**
+     * Window to use for {@code type}, given the interval the user configured for it.
+     */
+    public synchronized long intervalMs(ContainerType type, long configuredMs) {
+        long floor = limits.get(type).minIntervalMs;
+        long interval = Math.round(configuredMs * factors.get(SyncLane.of(type)));
+        return floor >= 0 ? Math.max(floor, interval) : Math.max(configuredMs, interval);
+    }
+
+    /**
+     * Largest request body the server accepts for {@code type}, or -1 if it set none.
+     */
+    public synchronized long maxPayloadBytes(ContainerType type) {
+        return limits.get(type).maxPayloadBytes;
+    }
+
+    public synchronized double getFactor(SyncLane lane) {
+        return factors.get(lane);
+    }
+
+    /**
+     * Reads {@code "limits": {"bank": {"min_interval_ms": 30000, "max_payload_bytes": 262144}, ...}}
+     * from the handshake response. Containers it leaves out keep their current limits.
+     */
+    public synchronized void applyLimits(JsonObject response) {
+        JsonElement element = response.get("limits");
+        if (element == null || !element.isJsonObject()) {
+            return;
+        }
+        for (ContainerType type : ContainerType.values()) {
+            JsonElement limit = element.getAsJsonObject().get(type.getPath());
+            if (limit == null || !limit.isJsonObject()) {
+                continue;
+            }
+            JsonObject json = limit.getAsJsonObject();
+            if (json.has("min_interval_ms")) {
+                limits.get(type).minIntervalMs = json.get("min_interval_ms").getAsLong();
+            }
+            if (json.has("max_payload_bytes")) {
+                limits.get(type).maxPayloadBytes = json.get("max_payload_bytes").getAsLong();
+            }
+        }
+        log.debug("Server sync limits: {}", this);
+    }
+
+    /**
+     * Reads {@code bank=30000, inventory=5000} style headers from a sync response.
+     */
+    public synchronized void applyHeaders(String minInterval, String maxPayload) {
+        parseHeader(minInterval, true);
+        parseHeader(maxPayload, false);
+    }
+
+    /**
+     * Forgets server limits and backoff, e.g. after switching servers.
+     */
+    public synchronized void reset() {
+        for (Limit limit : limits.values()) {
+            limit.minIntervalMs = -1;
+            limit.maxPayloadBytes = -1;
+        }
+        for (SyncLane lane : SyncLane.values()) {
+            factors.put(lane, 1.0);
+        }
+    }
+
+    /**
+     * Feeds one sync response on {@code lane} into that lane's backoff factor; {@code status} 0
+     * means no response. {@code nanos} should be the server's share of the request, from the
+     * body being written to the response headers, so a large upload is not read as congestion.
+     */
+    public synchronized void onResponse(SyncLane lane, int status, long nanos) {
+        boolean congested = status == 0 || status == 429 || status >= 500
+            || TimeUnit.NANOSECONDS.toMillis(nanos) > TARGET_LATENCY_MS;
+        double previous = factors.get(lane);
+        double factor = previous;
+        if (congested) {
+            factor = Math.min(MAX_FACTOR, factor * 2);
+        } else if (status < 400) {
+            factor = Math.max(hasServerFloor() ? MIN_FACTOR : 1, factor - DECREASE_STEP);
+        }
+        factors.put(lane, factor);
+        if (congested && factor != previous) {
+            log.debug("Sync backoff factor for {} raised to {} (status {}, {}ms)", lane.getLabel(), factor, status,
+                TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    private boolean hasServerFloor() {
+        for (Limit limit : limits.values()) {
+            if (limit.minIntervalMs >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void parseHeader(String header, boolean interval) {
+        if (header == null || header.isEmpty()) {
+            return;
+        }
+        for (String part : header.split(",")) {
+            int eq = part.indexOf('=');
+            if (eq < 0) {
+                continue;
+            }
+            String path = part.substring(0, eq).trim();
+            for (ContainerType type : ContainerType.values()) {
+                if (!type.getPath().equals(path)) {
+                    continue;
+                }
+                try {
+                    long value = Long.parseLong(part.substring(eq + 1).trim());
+                    if (interval) {
+                        limits.get(type).minIntervalMs = value;
+                    } else {
+                        limits.get(type).maxPayloadBytes = value;
+                    }
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring unreadable sync budget entry: {}", part);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder("factors=").append(factors);
+        for (Map.Entry<ContainerType, Limit> entry : limits.entrySet()) {
+            out.append(", ").append(entry.getKey().getPath())
+                .append("=").append(entry.getValue().minIntervalMs)
+                .append("ms/").append(entry.getValue().maxPayloadBytes).append("B");
+        }
+        return out.toString();
+    }
+}
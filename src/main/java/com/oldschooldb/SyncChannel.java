@@ -0,0 +1,300 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent WebSocket to {@code /api/plugin/ws} that carries {@link SyncBatch}es as
+ * sequenced messages instead of one POST each. The token is checked once, on the upgrade.
+ * Messages are pipelined: each is sent as soon as it is ready and the server acknowledges
+ * them asynchronously with {@code {"ack": seq, "results": {...}}}, the same results a
+ * {@code /api/plugin/sync/batch} response carries.
+ *
+ * Unacknowledged messages are retransmitted, in order, after a reconnect. If the socket
+ * is down, a message is not acknowledged within {@link #ACK_TIMEOUT_MS}, or the server
+ * has no channel endpoint, batches go over HTTP instead.
+ */
+@Slf4j
+public class SyncChannel extends WebSocketListener {
+    static final String PATH = "/api/plugin/ws";
+    static final String ENDPOINT = "ws";
+    static final long ACK_TIMEOUT_MS = 15_000;
+    private static final int CLOSE_NORMAL = 1000;
+
+    private final AuthService authService;
+    private final ScheduledExecutorService timer;
+    private final SyncMetrics metrics;
+    private final SyncBudget budget;
+    private final Gson gson = new Gson();
+    private final String channelId = UUID.randomUUID().toString();
+    private final Map<Long, Pending> unacked = new LinkedHashMap<>();
+
+    private WebSocket socket;
+    private boolean open = false;
+    private boolean enabled = false;
+    private long nextSeq = 1;
+    private int failedAttempts = 0;
+    private ScheduledFuture<?> reconnect;
+
+    public SyncChannel(AuthService authService, ScheduledExecutorService timer, SyncMetrics metrics, SyncBudget budget) {
+        this.authService = authService;
+        this.timer = timer;
+        this.metrics = metrics;
+        this.budget = budget;
+    }
+
+    /**
+     * Connects, or reconnects with the current server and token if already started.
+     */
+    public synchronized void start() {
+        enabled = true;
+        failedAttempts = 0;
+        disconnect();
+        connect();
+    }
+
+    /**
+     * Closes the socket. Messages still waiting for an ack are sent over HTTP.
+     */
+    public void stop() {
+        List<Pending> orphaned;
+        synchronized (this) {
+            enabled = false;
+            disconnect();
+            orphaned = new ArrayList<>(unacked.values());
+            unacked.clear();
+        }
+        for (Pending pending : orphaned) {
+            fallBack(pending);
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Sends {@code batch} over the socket, or returns null if the socket is not open so the
+     * caller can POST it instead.
+     */
+    public CompletableFuture<SyncBatchResult> send(SyncBatch batch) {
+        Pending pending;
+        long writeNanos;
+        synchronized (this) {
+            if (!open) {
+                return null;
+            }
+            long seq = nextSeq++;
+            long start = System.nanoTime();
+            try {
+                pending = new Pending(batch, write(seq, batch));
+            } catch (IOException e) {
+                log.warn("Could not write sync channel message", e);
+                return null;
+            }
+            writeNanos = System.nanoTime() - start;
+            unacked.put(seq, pending);
+            pending.timeout = timer.schedule(() -> timedOut(seq), ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (!socket.send(pending.text)) {
+                // Socket is closing or its outgoing queue is full
+                unacked.remove(seq);
+                pending.timeout.cancel(false);
+                return null;
+            }
+        }
+        metrics.recordSerialization(ENDPOINT, pending.bytes, writeNanos);
+        metrics.recordWireBytes(ENDPOINT, pending.bytes);
+        return pending.result;
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket, Response response) {
+        List<Pending> retransmit;
+        synchronized (this) {
+            if (webSocket != socket) {
+                return;
+            }
+            open = true;
+            failedAttempts = 0;
+            retransmit = new ArrayList<>(unacked.values());
+            for (Pending pending : retransmit) {
+                pending.sentAt = System.nanoTime();
+                webSocket.send(pending.text);
+            }
+        }
+        log.info("Sync channel open{}", retransmit.isEmpty() ? "" : ", resent " + retransmit.size() + " unacknowledged");
+        for (Pending pending : retransmit) {
+            metrics.recordRetry(ENDPOINT);
+            metrics.recordWireBytes(ENDPOINT, pending.bytes);
+        }
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+        JsonObject message;
+        try {
+            message = gson.fromJson(text, JsonObject.class);
+        } catch (RuntimeException e) {
+            log.debug("Unreadable sync channel message: {}", text);
+            return;
+        }
+        if (message == null || !message.has("ack")) {
+            return;
+        }
+        Pending pending;
+        synchronized (this) {
+            pending = unacked.remove(message.get("ack").getAsLong());
+        }
+        if (pending == null) {
+            return; // Already acked before a retransmit, or timed out and sent over HTTP
+        }
+        pending.timeout.cancel(false);
+        long nanos = System.nanoTime() - pending.sentAt;
+        metrics.recordHttp(ENDPOINT, nanos);
+        budget.onResponse(pending.batch.getLane(), 200, nanos);
+        JsonObject results = message.has("results") && message.get("results").isJsonObject()
+            ? message.getAsJsonObject("results")
+            : new JsonObject();
+        pending.result.complete(SyncBatchResult.ok(results));
+    }
+
+    @Override
+    public void onClosing(WebSocket webSocket, int code, String reason) {
+        webSocket.close(CLOSE_NORMAL, null);
+        closed(webSocket, "closed by server (" + code + ")", false);
+    }
+
+    @Override
+    public void onClosed(WebSocket webSocket, int code, String reason) {
+        closed(webSocket, "closed (" + code + ")", false);
+    }
+
+    @Override
+    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+        int status = response != null ? response.code() : 0;
+        // No channel endpoint, or the token is no longer accepted: stay on HTTP until restarted
+        boolean permanent = status == 401 || status == 403 || status == 404 || status == 405 || status == 426;
+        closed(webSocket, status != 0 ? "upgrade refused (" + status + ")" : String.valueOf(t.getMessage()), permanent);
+    }
+
+    private void closed(WebSocket webSocket, String reason, boolean permanent) {
+        synchronized (this) {
+            if (webSocket != socket) {
+                return;
+            }
+            socket = null;
+            open = false;
+            if (!enabled) {
+                return;
+            }
+            if (permanent) {
+                log.info("Sync channel unavailable ({}), using HTTP", reason);
+                enabled = false;
+            } else {
+                long delay = RetryPolicy.delayMs(++failedAttempts);
+                log.debug("Sync channel {}, reconnecting in {}ms", reason, delay);
+                reconnect = timer.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        stop(); // Hand anything unacknowledged to HTTP
+    }
+
+    private synchronized void reconnect() {
+        if (enabled && socket == null) {
+            connect();
+        }
+    }
+
+    private void connect() {
+        socket = authService.openChannel(channelId, this);
+    }
+
+    private void disconnect() {
+        if (reconnect != null) {
+            reconnect.cancel(false);
+            reconnect = null;
+        }
+        if (socket != null) {
+            WebSocket closing = socket;
+            socket = null; // Callbacks from the old socket are ignored from here on
+            open = false;
+            closing.close(CLOSE_NORMAL, null);
+        }
+    }
+
+    private void timedOut(long seq) {
+        Pending pending;
+        synchronized (this) {
+            pending = unacked.remove(seq);
+        }
+        if (pending != null) {
+            log.debug("Sync channel message {} not acknowledged in {}ms, sending over HTTP", seq, ACK_TIMEOUT_MS);
+            budget.onResponse(pending.batch.getLane(), 0, TimeUnit.MILLISECONDS.toNanos(ACK_TIMEOUT_MS));
+            fallBack(pending);
+        }
+    }
+
+    private void fallBack(Pending pending) {
+        if (pending.timeout != null) {
+            pending.timeout.cancel(false);
+        }
+        CompletableFuture<SyncBatchResult> sent;
+        try {
+            sent = authService.sendBatch(pending.batch);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the batch's snapshots stay in the outbox for the next session
+            pending.result.completeExceptionally(e);
+            return;
+        }
+        sent.whenComplete((result, ex) -> {
+            if (ex != null) {
+                pending.result.completeExceptionally(ex);
+            } else {
+                pending.result.complete(result);
+            }
+        });
+    }
+
+    private static String write(long seq, SyncBatch batch) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        SyncPayloadWriter.channelMessage(seq, batch).write(json);
+        json.flush();
+        return out.toString();
+    }
+
+    private static class Pending {
+        final SyncBatch batch;
+        final String text;
+        final long bytes;
+        final CompletableFuture<SyncBatchResult> result = new CompletableFuture<>();
+        long sentAt = System.nanoTime();
+        ScheduledFuture<?> timeout;
+
+        Pending(SyncBatch batch, String text) {
+            this.batch = batch;
+            this.text = text;
+            this.bytes = text.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.oldschooldb;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An update that was throttled away: dropped outright or folded into a later one.
+ */
+@Name("com.oldschooldb.SyncCoalesce")
+@Label("Sync Throttled")
+@Category({"OldSchoolDB", "Sync"})
+@Description("A container or GE update that was dropped or coalesced instead of being sent")
+@StackTrace(false)
+class SyncCoalesceEvent extends Event {
+    @Label("Container")
+    String container;
+
+    @Label("Outcome")
+    @Description("dropped or coalesced")
+    String outcome;
+}
@@ -0,0 +1,292 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs sync uploads on small dedicated pools instead of the common ForkJoinPool.
+ *
+ * Each {@link SyncKey} has at most one upload in flight and at most one waiting
+ * behind it. A newer update for the same key replaces the waiting one (latest wins),
+ * so an older snapshot can never be sent after a newer one. Each account may only
+ * have a bounded number of keys waiting; beyond that, submissions are rejected.
+ *
+ * Uploads are split into {@link SyncLane}s, each with its own writer threads and a cap on
+ * uploads in flight. Keys that are ready but over their lane's cap wait in arrival order.
+ * While expedited work is in flight or waiting, the bulk lane starts at most
+ * {@link #BULK_IN_FLIGHT_WHILE_EXPEDITED} uploads, so a bank upload never holds up a GE offer.
+ */
+@Slf4j
+public class SyncDispatcher {
+    private static final int MAX_PENDING_PER_ACCOUNT = 16;
+    private static final int BULK_IN_FLIGHT_WHILE_EXPEDITED = 1;
+
+    private final Map<SyncLane, ExecutorService> executors = new EnumMap<>(SyncLane.class);
+    private final Map<SyncLane, Deque<SyncKey>> ready = new EnumMap<>(SyncLane.class);
+    private final Map<SyncLane, Integer> inFlight = new EnumMap<>(SyncLane.class);
+    private final int maxPendingPerAccount;
+    private final SyncMetrics metrics;
+    private final Map<SyncKey, Stream> streams = new HashMap<>();
+    private final Map<Long, Integer> pendingPerAccount = new HashMap<>();
+    private boolean shuttingDown = false;
+
+    private static class Stream {
+        Supplier<CompletableFuture<Boolean>> pending;
+        List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+        boolean running;
+    }
+
+    public SyncDispatcher(SyncMetrics metrics) {
+        this(MAX_PENDING_PER_ACCOUNT, metrics);
+    }
+
+    public SyncDispatcher(int maxPendingPerAccount, SyncMetrics metrics) {
+        for (SyncLane lane : SyncLane.values()) {
+            executors.put(lane, Executors.newFixedThreadPool(lane.getWriterThreads(), new SyncThreadFactory(lane)));
+            ready.put(lane, new ArrayDeque<>());
+            inFlight.put(lane, 0);
+        }
+        this.maxPendingPerAccount = maxPendingPerAccount;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Executor that {@link AuthService} runs its blocking HTTP calls for {@code lane} on.
+     */
+    public Executor executor(SyncLane lane) {
+        return executors.get(lane);
+    }
+
+    public synchronized CompletableFuture<Boolean> submit(SyncKey key, Supplier<CompletableFuture<Boolean>> task) {
+        if (shuttingDown) {
+            return rejected("Sync dispatcher is shutting down");
+        }
+
+        SyncLane lane = SyncLane.of(key.getType());
+        Stream stream = streams.computeIfAbsent(key, k -> new Stream());
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        result.whenComplete((success, ex) ->
+            metrics.recordLane(lane, System.nanoTime() - submitted, ex == null && success));
+
+        if (stream.pending != null) {
+            // Supersede the queued snapshot; its callers get the newer upload's result
+            log.debug("Coalescing queued sync for {}", key);
+            metrics.recordCoalesced(key.getType());
+            stream.pending = task;
+            stream.waiters.add(result);
+            return result;
+        }
+
+        if (!stream.running && ready.get(lane).isEmpty() && admits(lane)) {
+            start(key, stream, lane, task, singleton(result));
+            return result;
+        }
+
+        int pending = pendingPerAccount.getOrDefault(key.getAccountHash(), 0);
+        if (pending >= maxPendingPerAccount) {
+            log.warn("Sync queue full for account: {}, rejecting {} update", key.getAccountHash(), key.getType());
+            metrics.recordDropped(key.getType());
+            if (!stream.running) {
+                streams.remove(key);
+            }
+            return rejected("Sync queue full");
+        }
+
+        pendingPerAccount.put(key.getAccountHash(), pending + 1);
+        stream.pending = task;
+        stream.waiters.add(result);
+        if (!stream.running) {
+            ready.get(lane).addLast(key);
+        }
+        return result;
+    }
+
+    /**
+     * Uploads in flight plus uploads waiting behind them.
+     */
+    public synchronized int queueDepth() {
+        int waiting = 0;
+        for (int pending : pendingPerAccount.values()) {
+            waiting += pending;
+        }
+        int running = 0;
+        for (Stream stream : streams.values()) {
+            if (stream.running) {
+                running++;
+            }
+        }
+        return running + waiting;
+    }
+
+    /**
+     * Uploads in flight on {@code lane} plus keys waiting for it to admit them.
+     */
+    public synchronized int laneDepth(SyncLane lane) {
+        return inFlight.get(lane) + ready.get(lane).size();
+    }
+
+    /**
+     * Waits until every queued and in-flight upload has finished, or the deadline passes.
+     */
+    public synchronized boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!streams.isEmpty()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                log.warn("Sync drain timed out with {} streams outstanding", streams.size());
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting work, gives outstanding uploads until the deadline to finish, then stops the writers.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        synchronized (this) {
+            shuttingDown = true;
+        }
+        try {
+            drain(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ExecutorService executor : executors.values()) {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean admits(SyncLane lane) {
+        int limit = lane.getMaxInFlight();
+        if (lane == SyncLane.BULK
+            && (inFlight.get(SyncLane.EXPEDITED) > 0 || !ready.get(SyncLane.EXPEDITED).isEmpty())) {
+            limit = Math.min(limit, BULK_IN_FLIGHT_WHILE_EXPEDITED);
+        }
+        return inFlight.get(lane) < limit;
+    }
+
+    private void start(SyncKey key, Stream stream, SyncLane lane, Supplier<CompletableFuture<Boolean>> task,
+                       List<CompletableFuture<Boolean>> waiters) {
+        stream.running = true;
+        inFlight.merge(lane, 1, Integer::sum);
+        run(key, stream, lane, task, waiters);
+    }
+
+    /**
+     * Starts waiting keys, expedited first, for as long as their lanes have room.
+     */
+    private void dispatch() {
+        for (SyncLane lane : SyncLane.values()) {
+            Deque<SyncKey> waiting = ready.get(lane);
+            while (!waiting.isEmpty() && admits(lane)) {
+                SyncKey key = waiting.pollFirst();
+                Stream stream = streams.get(key);
+                Supplier<CompletableFuture<Boolean>> task = stream.pending;
+                List<CompletableFuture<Boolean>> waiters = stream.waiters;
+                stream.pending = null;
+                stream.waiters = new ArrayList<>();
+                pendingPerAccount.computeIfPresent(key.getAccountHash(), (k, v) -> v > 1 ? v - 1 : null);
+                start(key, stream, lane, task, waiters);
+            }
+        }
+    }
+
+    private void run(SyncKey key, Stream stream, SyncLane lane, Supplier<CompletableFuture<Boolean>> task,
+                     List<CompletableFuture<Boolean>> waiters) {
+        try {
+            executors.get(lane).execute(() -> {
+                CompletableFuture<Boolean> upload;
+                try {
+                    upload = task.get();
+                } catch (RuntimeException e) {
+                    upload = new CompletableFuture<>();
+                    upload.completeExceptionally(e);
+                }
+                upload.whenComplete((success, ex) -> {
+                    for (CompletableFuture<Boolean> waiter : waiters) {
+                        if (ex != null) {
+                            waiter.completeExceptionally(ex);
+                        } else {
+                            waiter.complete(success);
+                        }
+                    }
+                    next(key, stream, lane);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            for (CompletableFuture<Boolean> waiter : waiters) {
+                waiter.completeExceptionally(e);
+            }
+            synchronized (this) {
+                for (CompletableFuture<Boolean> waiter : stream.waiters) {
+                    waiter.completeExceptionally(e);
+                }
+                if (stream.pending != null) {
+                    pendingPerAccount.computeIfPresent(key.getAccountHash(), (k, v) -> v > 1 ? v - 1 : null);
+                }
+                inFlight.merge(lane, -1, Integer::sum);
+                streams.remove(key);
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void next(SyncKey key, Stream stream, SyncLane lane) {
+        stream.running = false;
+        inFlight.merge(lane, -1, Integer::sum);
+        if (stream.pending == null) {
+            streams.remove(key);
+        } else {
+            ready.get(lane).addLast(key);
+        }
+        dispatch();
+        notifyAll();
+    }
+
+    private static List<CompletableFuture<Boolean>> singleton(CompletableFuture<Boolean> future) {
+        List<CompletableFuture<Boolean>> list = new ArrayList<>(1);
+        list.add(future);
+        return list;
+    }
+
+    private static CompletableFuture<Boolean> rejected(String reason) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        future.completeExceptionally(new RejectedExecutionException(reason));
+        return future;
+    }
+
+    private static class SyncThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final SyncLane lane;
+
+        SyncThreadFactory(SyncLane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "OldSchoolDB-Sync-" + lane.getLabel() + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
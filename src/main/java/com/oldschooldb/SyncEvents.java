@@ -0,0 +1,142 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Emits the plugin's Java Flight Recorder events when the <i>JFR Events</i> setting is on.
+ *
+ * Every method checks one volatile flag first, so with the setting off no event object
+ * is created and the JFR classes are never loaded; {@code begin*} methods then return
+ * null and the matching {@code end*} methods ignore it. If the JVM has no JFR module,
+ * enabling does nothing.
+ */
+@Slf4j
+public final class SyncEvents {
+    private static volatile boolean enabled = false;
+
+    private SyncEvents() {
+    }
+
+    public static void setEnabled(boolean enable) {
+        if (enable && !enabled) {
+            try {
+                Class.forName("jdk.jfr.Event");
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.warn("JFR is not available in this JVM, plugin events stay off");
+                return;
+            }
+        }
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    static ContainerCaptureEvent beginCapture() {
+        if (!enabled) {
+            return null;
+        }
+        ContainerCaptureEvent event = new ContainerCaptureEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endCapture(ContainerCaptureEvent event, ContainerType type, int itemCount, long accountHash,
+                           boolean unchanged) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.container = type.getPath();
+            event.itemCount = itemCount;
+            event.accountHash = accountHash;
+            event.unchanged = unchanged;
+            event.commit();
+        }
+    }
+
+    static PayloadWriteEvent beginPayloadWrite() {
+        if (!enabled) {
+            return null;
+        }
+        PayloadWriteEvent event = new PayloadWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endPayloadWrite(PayloadWriteEvent event, String endpoint, String stage, long bytes, long accountHash,
+                                int itemCount) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.endpoint = endpoint;
+            event.stage = stage;
+            event.bytes = bytes;
+            event.accountHash = accountHash;
+            event.itemCount = itemCount;
+            event.commit();
+        }
+    }
+
+    static SyncRequestEvent beginRequest() {
+        if (!enabled) {
+            return null;
+        }
+        SyncRequestEvent event = new SyncRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endRequest(SyncRequestEvent event, String endpoint, int status, boolean binary, boolean compressed,
+                           long accountHash, int itemCount) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.endpoint = endpoint;
+            event.status = status;
+            event.binary = binary;
+            event.compressed = compressed;
+            event.accountHash = accountHash;
+            event.itemCount = itemCount;
+            event.commit();
+        }
+    }
+
+    static void throttled(ContainerType type, String outcome) {
+        if (!enabled) {
+            return;
+        }
+        SyncCoalesceEvent event = new SyncCoalesceEvent();
+        if (event.shouldCommit()) {
+            event.container = type.getPath();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    static AuthAttemptEvent beginAuth() {
+        if (!enabled) {
+            return null;
+        }
+        AuthAttemptEvent event = new AuthAttemptEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endAuth(AuthAttemptEvent event, boolean success) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.success = success;
+            event.commit();
+        }
+    }
+}
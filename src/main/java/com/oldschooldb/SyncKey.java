@@ -0,0 +1,23 @@
+package com.oldschooldb;
+
+import lombok.Value;
+
+/**
+ * Identifies one ordered sync stream: a container for an account, or a single
+ * Grand Exchange slot. Updates with the same key are sent in order and may
+ * replace each other while queued.
+ */
+@Value
+public class SyncKey {
+    long accountHash;
+    ContainerType type;
+    int slot;
+
+    public static SyncKey of(long accountHash, ContainerType type) {
+        return new SyncKey(accountHash, type, -1);
+    }
+
+    public static SyncKey of(long accountHash, ContainerType type, int slot) {
+        return new SyncKey(accountHash, type, slot);
+    }
+}
@@ -0,0 +1,32 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Priority classes for uploads. GE offers and equipment are small and time-sensitive, so
+ * they go on the expedited lane with its own writer threads and in-flight budget; bank and
+ * inventory snapshots go on the bulk lane, which yields whenever expedited work is waiting.
+ * Each lane has a latency target from submission to acknowledgement, tracked by {@link SyncMetrics}.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum SyncLane {
+    EXPEDITED("expedited", 2, 16, 1_000),
+    BULK("bulk", 2, 4, 10_000);
+
+    private final String label;
+    private final int writerThreads;
+    private final int maxInFlight;
+    private final long sloMs;
+
+    public static SyncLane of(ContainerType type) {
+        switch (type) {
+            case GRAND_EXCHANGE:
+            case EQUIPMENT:
+                return EXPEDITED;
+            default:
+                return BULK;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.oldschooldb;
+
+import com.google.gson.JsonObject;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Counters and latency histograms for every stage of the sync pipeline, per container
+ * type (capture on the client thread, dropped and coalesced updates) and per endpoint
+ * (serialization, bytes before and after compression, HTTP latency, retries, failures),
+ * and per {@link SyncLane} (time from submission to acknowledgement against the lane's target).
+ * Shown in the side panel and exported as a periodic summary, to tell plugin-side
+ * slowness from backend slowness.
+ */
+public class SyncMetrics {
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<ContainerType, ContainerStats> containers = new EnumMap<>(ContainerType.class);
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final Map<SyncLane, LaneStats> lanes = new EnumMap<>(SyncLane.class);
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile ToIntFunction<SyncLane> laneDepth = lane -> 0;
+
+    public SyncMetrics() {
+        for (ContainerType type : ContainerType.values()) {
+            containers.put(type, new ContainerStats());
+        }
+        for (SyncLane lane : SyncLane.values()) {
+            lanes.put(lane, new LaneStats());
+        }
+    }
+
+    @Getter
+    public static class ContainerStats {
+        private final LatencyHistogram capture = new LatencyHistogram();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+    }
+
+    @Getter
+    public static class EndpointStats {
+        private final LatencyHistogram serialization = new LatencyHistogram();
+        private final LatencyHistogram http = new LatencyHistogram();
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder wireBytes = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+    }
+
+    @Getter
+    public static class LaneStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder sloMisses = new LongAdder();
+
+        /**
+         * Share of uploads that succeeded within the lane's target, from 0 to 1.
+         */
+        public double sloAttainment() {
+            long total = latency.count();
+            return total == 0 ? 1 : 1 - (double) sloMisses.sum() / total;
+        }
+    }
+
+    /**
+     * Time spent copying a container on the client thread.
+     */
+    public void recordCapture(ContainerType type, long nanos) {
+        containers.get(type).capture.recordNanos(nanos);
+    }
+
+    /**
+     * An update that was never sent: unchanged snapshot, GE no-op, or a full queue.
+     */
+    public void recordDropped(ContainerType type) {
+        containers.get(type).dropped.increment();
+        SyncEvents.throttled(type, "dropped");
+    }
+
+    /**
+     * An update folded into another one that is sent instead.
+     */
+    public void recordCoalesced(ContainerType type) {
+        containers.get(type).coalesced.increment();
+        SyncEvents.throttled(type, "coalesced");
+    }
+
+    /**
+     * Time spent writing a payload, and its size before compression.
+     */
+    public void recordSerialization(String endpoint, long rawBytes, long nanos) {
+        EndpointStats stats = endpoint(endpoint);
+        stats.serialization.recordNanos(nanos);
+        stats.rawBytes.add(rawBytes);
+    }
+
+    /**
+     * Bytes of request body actually sent, after compression if any.
+     */
+    public void recordWireBytes(String endpoint, long bytes) {
+        endpoint(endpoint).wireBytes.add(bytes);
+    }
+
+    /**
+     * Time from starting a request until its response headers arrived, including the upload.
+     */
+    public void recordHttp(String endpoint, long nanos) {
+        endpoint(endpoint).http.recordNanos(nanos);
+    }
+
+    public void recordRetry(String endpoint) {
+        endpoint(endpoint).retries.increment();
+    }
+
+    public void recordFailure(String endpoint) {
+        endpoint(endpoint).failures.increment();
+    }
+
+    /**
+     * Time from submitting an upload to its outcome, including time queued behind other
+     * uploads. A failed upload, or one slower than the lane's target, is an SLO miss.
+     */
+    public void recordLane(SyncLane lane, long nanos, boolean success) {
+        LaneStats stats = lanes.get(lane);
+        stats.latency.recordNanos(nanos);
+        if (!success || TimeUnit.NANOSECONDS.toMillis(nanos) > lane.getSloMs()) {
+            stats.sloMisses.increment();
+        }
+    }
+
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public void setLaneDepth(ToIntFunction<SyncLane> laneDepth) {
+        this.laneDepth = laneDepth;
+    }
+
+    public int getLaneDepth(SyncLane lane) {
+        return laneDepth.applyAsInt(lane);
+    }
+
+    public Map<SyncLane, LaneStats> getLanes() {
+        return Collections.unmodifiableMap(lanes);
+    }
+
+    public Map<ContainerType, ContainerStats> getContainers() {
+        return Collections.unmodifiableMap(containers);
+    }
+
+    /**
+     * Endpoints seen so far, sorted by name.
+     */
+    public Map<String, EndpointStats> getEndpoints() {
+        return new TreeMap<>(endpoints);
+    }
+
+    /**
+     * Everything recorded since the plugin started, for export.
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("started_at", startedAt);
+        json.addProperty("exported_at", System.currentTimeMillis());
+        json.addProperty("queue_depth", getQueueDepth());
+
+        JsonObject containerJson = new JsonObject();
+        for (Map.Entry<ContainerType, ContainerStats> entry : containers.entrySet()) {
+            ContainerStats stats = entry.getValue();
+            JsonObject stat = new JsonObject();
+            stat.add("capture_us", histogram(stats.capture));
+            stat.addProperty("dropped", stats.dropped.sum());
+            stat.addProperty("coalesced", stats.coalesced.sum());
+            containerJson.add(entry.getKey().getPath(), stat);
+        }
+        json.add("containers", containerJson);
+
+        JsonObject endpointJson = new JsonObject();
+        for (Map.Entry<String, EndpointStats> entry : getEndpoints().entrySet()) {
+            EndpointStats stats = entry.getValue();
+            JsonObject stat = new JsonObject();
+            stat.add("serialization_us", histogram(stats.serialization));
+            stat.add("http_us", histogram(stats.http));
+            stat.addProperty("raw_bytes", stats.rawBytes.sum());
+            stat.addProperty("wire_bytes", stats.wireBytes.sum());
+            stat.addProperty("retries", stats.retries.sum());
+            stat.addProperty("failures", stats.failures.sum());
+            endpointJson.add(entry.getKey(), stat);
+        }
+        json.add("endpoints", endpointJson);
+
+        JsonObject laneJson = new JsonObject();
+        for (Map.Entry<SyncLane, LaneStats> entry : lanes.entrySet()) {
+            LaneStats stats = entry.getValue();
+            JsonObject stat = new JsonObject();
+            stat.add("latency_us", histogram(stats.latency));
+            stat.addProperty("slo_ms", entry.getKey().getSloMs());
+            stat.addProperty("slo_misses", stats.sloMisses.sum());
+            stat.addProperty("slo_attainment", stats.sloAttainment());
+            stat.addProperty("depth", getLaneDepth(entry.getKey()));
+            laneJson.add(entry.getKey().getLabel(), stat);
+        }
+        json.add("lanes", laneJson);
+        return json;
+    }
+
+    private static JsonObject histogram(LatencyHistogram histogram) {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", histogram.count());
+        json.addProperty("mean", histogram.meanMicros());
+        json.addProperty("p50", histogram.percentileMicros(0.50));
+        json.addProperty("p99", histogram.percentileMicros(0.99));
+        json.addProperty("max", histogram.maxMicros());
+        return json;
+    }
+
+    private EndpointStats endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, e -> new EndpointStats());
+    }
+}
@@ -0,0 +1,238 @@
+package com.oldschooldb;
+
+import com.google.gson.stream.JsonWriter;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.Item;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Streams sync payloads as JSON straight into the request sink. Items are written
+ * as they are read from the container, skipping empty slots, so no per-item maps
+ * or intermediate String of the whole body are ever built.
+ *
+ * Every {@code timestamp} is the time the snapshot was captured, not the time it is sent.
+ */
+public final class SyncPayloadWriter {
+    public static final MediaType JSON = MediaType.get("application/json");
+
+    @FunctionalInterface
+    public interface Payload {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private SyncPayloadWriter() {
+    }
+
+    public static RequestBody requestBody(Payload payload) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                // Don't close the writer: that would close the sink OkHttp still owns
+                Writer writer = new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8);
+                JsonWriter json = new JsonWriter(writer);
+                payload.write(json);
+                json.flush();
+            }
+        };
+    }
+
+    public static Payload items(long accountHash, long timestamp, Item[] items) {
+        return json -> {
+            json.beginObject();
+            json.name("account_hash").value(accountHash);
+            json.name("timestamp").value(timestamp);
+            writeItemsField(json, items);
+            json.endObject();
+        };
+    }
+
+    public static Payload bankDelta(long accountHash, long timestamp, long baseVersion, BankDelta delta) {
+        return json -> {
+            json.beginObject();
+            json.name("account_hash").value(accountHash);
+            json.name("timestamp").value(timestamp);
+            writeBankDeltaFields(json, baseVersion, delta);
+            json.endObject();
+        };
+    }
+
+    public static Payload grandExchangeOffer(long accountHash, long timestamp, int slot, GrandExchangeOffer offer) {
+        return json -> {
+            json.beginObject();
+            json.name("account_hash").value(accountHash);
+            json.name("timestamp").value(timestamp);
+            writeGrandExchangeOfferFields(json, slot, offer);
+            json.endObject();
+        };
+    }
+
+    /**
+     * One chunk of a {@link ChunkedBankUpload}, written from its slot range of the bank.
+     */
+    public static Payload bankChunk(ChunkedBankUpload upload, int index) {
+        return json -> {
+            json.beginObject();
+            json.name("account_hash").value(upload.getAccountHash());
+            json.name("snapshot_id").value(upload.getSnapshotId());
+            json.name("index").value(index);
+            json.name("chunks").value(upload.chunkCount());
+            json.name("crc32").value(Integer.toUnsignedLong(upload.getChecksums()[index]));
+            writeItemsField(json, upload.getItems(), upload.getStarts()[index], upload.getStarts()[index + 1]);
+            json.endObject();
+        };
+    }
+
+    /**
+     * The manifest that commits a {@link ChunkedBankUpload}: every chunk with its item count and checksum.
+     */
+    public static Payload bankManifest(ChunkedBankUpload upload) {
+        return json -> {
+            json.beginObject();
+            json.name("account_hash").value(upload.getAccountHash());
+            json.name("timestamp").value(upload.getTimestamp());
+            json.name("snapshot_id").value(upload.getSnapshotId());
+            json.name("items").value(upload.getItemCount());
+            json.name("chunks").beginArray();
+            for (int i = 0; i < upload.chunkCount(); i++) {
+                json.beginObject();
+                json.name("index").value(i);
+                json.name("items").value(upload.getCounts()[i]);
+                json.name("crc32").value(Integer.toUnsignedLong(upload.getChecksums()[i]));
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        };
+    }
+
+    /**
+     * A batch: its newest capture time at the top, and each section's own capture time in the section.
+     */
+    public static Payload batch(SyncBatch batch) {
+        return json -> {
+            json.beginObject();
+            json.name("account_hash").value(batch.getAccountHash());
+            json.name("timestamp").value(batch.getTimestamp());
+            writeBatchFields(json, batch);
+            json.endObject();
+        };
+    }
+
+    /**
+     * A batch sent over the {@link SyncChannel}: the batch body plus the sequence number
+     * the server acknowledges it with.
+     */
+    public static Payload channelMessage(long seq, SyncBatch batch) {
+        return json -> {
+            json.beginObject();
+            json.name("seq").value(seq);
+            json.name("account_hash").value(batch.getAccountHash());
+            json.name("timestamp").value(batch.getTimestamp());
+            writeBatchFields(json, batch);
+            json.endObject();
+        };
+    }
+
+    private static void writeBatchFields(JsonWriter json, SyncBatch batch) throws IOException {
+        if (batch.getBankItems() != null) {
+            json.name(SyncBatch.BANK).beginObject();
+            json.name("timestamp").value(batch.getBankTimestamp());
+            writeItemsField(json, batch.getBankItems());
+            json.endObject();
+        }
+        if (batch.getBankDelta() != null) {
+            json.name(SyncBatch.BANK_DELTA).beginObject();
+            json.name("timestamp").value(batch.getBankTimestamp());
+            writeBankDeltaFields(json, batch.getBankBaseVersion(), batch.getBankDelta());
+            json.endObject();
+        }
+        if (batch.getInventoryItems() != null) {
+            json.name(SyncBatch.INVENTORY).beginObject();
+            json.name("timestamp").value(batch.getInventoryTimestamp());
+            writeItemsField(json, batch.getInventoryItems());
+            json.endObject();
+        }
+        if (batch.getEquipmentItems() != null) {
+            json.name(SyncBatch.EQUIPMENT).beginObject();
+            json.name("timestamp").value(batch.getEquipmentTimestamp());
+            writeItemsField(json, batch.getEquipmentItems());
+            json.endObject();
+        }
+        if (!batch.getGrandExchangeOffers().isEmpty()) {
+            json.name(SyncBatch.GRAND_EXCHANGE).beginArray();
+            for (Map.Entry<Integer, GrandExchangeOffer> entry : batch.getGrandExchangeOffers().entrySet()) {
+                json.beginObject();
+                json.name("timestamp").value(batch.getGrandExchangeTimestamps().get(entry.getKey()));
+                writeGrandExchangeOfferFields(json, entry.getKey(), entry.getValue());
+                json.endObject();
+            }
+            json.endArray();
+        }
+    }
+
+    private static void writeItemsField(JsonWriter json, Item[] items) throws IOException {
+        writeItemsField(json, items, 0, items.length);
+    }
+
+    private static void writeItemsField(JsonWriter json, Item[] items, int from, int to) throws IOException {
+        json.name("items").beginArray();
+        for (int i = from; i < to; i++) {
+            Item item = items[i];
+            if (item.getId() <= 0 || item.getQuantity() <= 0) {
+                continue; // Skip empty slots
+            }
+            writeQuantity(json, item.getId(), item.getQuantity());
+        }
+        json.endArray();
+    }
+
+    private static void writeBankDeltaFields(JsonWriter json, long baseVersion, BankDelta delta) throws IOException {
+        json.name("base_version").value(baseVersion);
+        json.name("added");
+        writeQuantities(json, delta.getAdded());
+        json.name("changed");
+        writeQuantities(json, delta.getChanged());
+        json.name("removed").beginArray();
+        for (int itemId : delta.getRemoved()) {
+            json.value(itemId);
+        }
+        json.endArray();
+    }
+
+    private static void writeQuantities(JsonWriter json, Map<Integer, Integer> quantities) throws IOException {
+        json.beginArray();
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            writeQuantity(json, entry.getKey(), entry.getValue());
+        }
+        json.endArray();
+    }
+
+    private static void writeQuantity(JsonWriter json, int itemId, int quantity) throws IOException {
+        json.beginObject();
+        json.name("item_id").value(itemId);
+        json.name("quantity").value(quantity);
+        json.endObject();
+    }
+
+    private static void writeGrandExchangeOfferFields(JsonWriter json, int slot, GrandExchangeOffer offer) throws IOException {
+        json.name("slot").value(slot);
+        json.name("item_id").value(offer.getItemId());
+        json.name("quantity").value(offer.getTotalQuantity());
+        json.name("price").value(offer.getPrice());
+        json.name("spent").value(offer.getSpent());
+        json.name("state").value(offer.getState().name());
+    }
+}
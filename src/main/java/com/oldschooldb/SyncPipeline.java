@@ -0,0 +1,281 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.GrandExchangeOffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything between "this container changed" and the server: snapshots are written
+ * to the {@link Outbox} on a single writer thread, so the caller never waits on disk,
+ * then queued on the {@link SyncDispatcher}, sent through the
+ * {@link SyncBatcher}, and acknowledged in the outbox once the server has them.
+ * While the token is unverified the pipeline can be put on {@link #hold()}: snapshots
+ * still reach the outbox but wait there, newest per container, until {@link #release()}.
+ * With a {@link SyncChannel}, batches stream over a WebSocket while it is connected.
+ */
+@Slf4j
+public class SyncPipeline {
+    private final SyncDispatcher dispatcher;
+    private final SyncBatcher batcher;
+    private final SyncChannel channel;
+    private final BankDeltaSync bankDeltaSync;
+    private final Outbox outbox;
+    private final OutboxReplayer replayer;
+    private final ExecutorService outboxWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "OldSchoolDB-Outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<SyncKey, Long> fingerprints = new ConcurrentHashMap<>();
+    private final Map<SyncKey, HeldSync> held = new LinkedHashMap<>();
+    private final Map<SyncKey, Long> lastSent = new HashMap<>(); // Newest outbox sequence sent or held per key
+    private boolean holding = false;
+
+    /**
+     * @param channel the WebSocket channel to use once {@link #setChannelEnabled enabled}, or null for HTTP only
+     */
+    public SyncPipeline(SyncDispatcher dispatcher, AuthService authService, ScheduledExecutorService timer,
+                        File dataDirectory, Gson gson, SyncChannel channel) {
+        this.dispatcher = dispatcher;
+        this.channel = channel;
+        this.batcher = new SyncBatcher(authService, timer, channel);
+        this.bankDeltaSync = new BankDeltaSync(batcher, new BankBaselineStore(dataDirectory, gson));
+
+        Outbox opened = null;
+        try {
+            opened = new Outbox(new File(dataDirectory, "outbox"));
+        } catch (IOException e) {
+            log.warn("Outbox unavailable, unsent snapshots will not survive a restart", e);
+        }
+        this.outbox = opened;
+        this.replayer = opened != null ? new OutboxReplayer(opened, timer, this::replay) : null;
+    }
+
+    /**
+     * True if {@code snapshot} matches the last snapshot submitted for this container,
+     * which is still in flight or was delivered, so sending it again would change nothing.
+     */
+    public boolean isUnchanged(long accountHash, ContainerType type, ItemSnapshot snapshot) {
+        Long previous = fingerprints.get(SyncKey.of(accountHash, type));
+        return previous != null && previous == snapshot.getFingerprint();
+    }
+
+    /**
+     * Queues {@code snapshot} for upload. Its data becomes the outbox entry, so is not copied again.
+     */
+    public CompletableFuture<Boolean> syncContainer(long accountHash, ContainerType type, ItemSnapshot snapshot) {
+        SyncKey key = SyncKey.of(accountHash, type);
+        long fingerprint = snapshot.getFingerprint();
+        fingerprints.put(key, fingerprint);
+        return submit(key, snapshot.getData()).whenComplete((success, ex) -> {
+            if (ex != null || !success) {
+                // Let the next identical snapshot through so a failed one is retried
+                fingerprints.remove(key, fingerprint);
+            }
+        });
+    }
+
+    public CompletableFuture<Boolean> syncGrandExchangeOffer(long accountHash, int slot, GrandExchangeOffer offer) {
+        return submit(SyncKey.of(accountHash, ContainerType.GRAND_EXCHANGE, slot), OutboxEntry.encodeOffer(offer));
+    }
+
+    /**
+     * Stops sending; later syncs wait in the outbox until {@link #release()}.
+     */
+    public synchronized void hold() {
+        holding = true;
+    }
+
+    /**
+     * Sends everything that arrived while on hold, in arrival order, and resumes sending.
+     */
+    public void release() {
+        List<HeldSync> ready;
+        synchronized (this) {
+            holding = false;
+            ready = new ArrayList<>(held.values());
+            held.clear();
+        }
+        if (!ready.isEmpty()) {
+            log.debug("Releasing {} syncs held until authentication", ready.size());
+        }
+        for (HeldSync sync : ready) {
+            send(sync.entry).whenComplete((success, ex) -> {
+                if (ex != null) {
+                    sync.result.completeExceptionally(ex);
+                } else {
+                    sync.result.complete(success);
+                }
+            });
+        }
+    }
+
+    /**
+     * Connects the sync channel with the current server and token, or closes it and goes
+     * back to HTTP. Call again after the token or server changes.
+     */
+    public void setChannelEnabled(boolean enabled) {
+        if (channel == null) {
+            return;
+        }
+        if (enabled) {
+            channel.start();
+        } else {
+            channel.stop();
+        }
+    }
+
+    /**
+     * Re-sends snapshots left in the outbox by an outage or an earlier session. Keys with a newer
+     * snapshot already sent or held, as after {@link #release()}, are skipped.
+     */
+    public void replayOutbox() {
+        if (replayer != null) {
+            replayer.replay();
+        }
+    }
+
+    /**
+     * Finishes writing submitted snapshots to the outbox, closes the sync channel, sends anything
+     * waiting on a batch window, then gives queued syncs until the deadline. Whatever is still unsent stays in the outbox
+     * for the next session.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        outboxWriter.shutdown();
+        try {
+            if (!outboxWriter.awaitTermination(timeout, unit)) {
+                log.warn("Outbox writes still pending at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel != null) {
+            channel.stop(); // Hands unacknowledged batches to HTTP, so before the lane executors stop
+        }
+        batcher.flushAll();
+        dispatcher.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    /**
+     * Appends {@code data} to the outbox and sends it. The write, and any compaction it triggers,
+     * runs on the outbox writer; one thread keeps each key's snapshots in submission order.
+     */
+    private CompletableFuture<Boolean> submit(SyncKey key, int[] data) {
+        long timestamp = System.currentTimeMillis(); // Called on capture, so this is the capture time
+        if (outbox == null) {
+            return send(new OutboxEntry(0, key, timestamp, data));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> append(key, timestamp, data), outboxWriter)
+                .thenCompose(this::send);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<Boolean> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    private OutboxEntry append(SyncKey key, long timestamp, int[] data) {
+        try {
+            return outbox.append(key, timestamp, data);
+        } catch (IOException e) {
+            log.warn("Failed to write {} snapshot to outbox", key.getType(), e);
+            return new OutboxEntry(0, key, timestamp, data);
+        }
+    }
+
+    /**
+     * Sends an outbox entry unless a snapshot at least as new for its key has already been sent
+     * or held; that one's ack clears this entry from the outbox. Checked and submitted under the
+     * lock, so an old entry never lands in the dispatcher behind a newer one and replaces it.
+     */
+    private CompletableFuture<Boolean> replay(OutboxEntry entry) {
+        synchronized (this) {
+            Long newest = lastSent.get(entry.getKey());
+            if (newest != null && newest >= entry.getSequence()) {
+                return CompletableFuture.completedFuture(true);
+            }
+            return send(entry);
+        }
+    }
+
+    private CompletableFuture<Boolean> send(OutboxEntry entry) {
+        SyncKey key = entry.getKey();
+        synchronized (this) {
+            lastSent.merge(key, entry.getSequence(), Math::max);
+            if (holding) {
+                HeldSync sync = new HeldSync(entry);
+                HeldSync superseded = held.remove(key); // Re-inserted last to keep arrival order
+                if (superseded != null) {
+                    // Only the newest snapshot is sent; the older one shares its outcome
+                    sync.result.whenComplete((success, ex) -> superseded.result.complete(ex == null && success));
+                }
+                held.put(key, sync);
+                return sync.result;
+            }
+        }
+        return dispatcher.submit(key, () -> upload(entry))
+            .whenComplete((success, ex) -> {
+                boolean rejected = ex != null && SyncRejectedException.isCause(ex);
+                if ((ex != null && !rejected) || replayer == null) {
+                    return;
+                }
+                if (rejected) {
+                    // Sending it again would be refused again; the server was reachable all the same
+                    log.warn("Dropping {} snapshot refused by the server: {}", key.getType(), ex.getMessage());
+                    outbox.ack(entry);
+                    replayer.onSyncResult(true);
+                    return;
+                }
+                if (success) {
+                    outbox.ack(entry);
+                }
+                replayer.onSyncResult(success);
+            });
+    }
+
+    private CompletableFuture<Boolean> upload(OutboxEntry entry) {
+        long accountHash = entry.getKey().getAccountHash();
+        long timestamp = entry.getTimestamp(); // Capture time, also for entries replayed from an earlier session
+        switch (entry.getKey().getType()) {
+            case BANK:
+                return bankDeltaSync.sync(accountHash, timestamp, entry.toItems());
+            case INVENTORY:
+                return batcher.sendInventoryData(accountHash, timestamp, entry.toItems());
+            case EQUIPMENT:
+                return batcher.sendEquipmentData(accountHash, timestamp, entry.toItems());
+            case GRAND_EXCHANGE:
+                return batcher.sendGrandExchangeOffer(accountHash, timestamp, entry.getKey().getSlot(), entry.toOffer());
+            default:
+                throw new IllegalArgumentException("Unknown container type " + entry.getKey().getType());
+        }
+    }
+
+    private static class HeldSync {
+        final OutboxEntry entry;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        HeldSync(OutboxEntry entry) {
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.oldschooldb;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The server refused a sync with a status that sending the same snapshot again cannot fix
+ * (see {@link RetryPolicy#isRejected}). Sync futures fail with it so the snapshot is dropped
+ * from the {@link Outbox} rather than replayed forever.
+ */
+@Getter
+public class SyncRejectedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public SyncRejectedException(String endpoint, int status) {
+        super("Server rejected " + endpoint + " sync with status " + status);
+        this.status = status;
+    }
+
+    /**
+     * Whether {@code ex}, as passed to a future's completion handler, is or wraps a rejection.
+     */
+    public static boolean isCause(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex instanceof SyncRejectedException;
+    }
+}
@@ -0,0 +1,38 @@
+package com.oldschooldb;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One HTTP attempt of a sync upload, from sending until the response headers arrive.
+ */
+@Name("com.oldschooldb.SyncRequest")
+@Label("Sync Request")
+@Category({"OldSchoolDB", "Sync"})
+@Description("A sync upload to the OldSchoolDB backend, including writing the body")
+@StackTrace(false)
+class SyncRequestEvent extends Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Status")
+    @Description("HTTP status, or 0 if the request failed without a response")
+    int status;
+
+    @Label("Binary")
+    boolean binary;
+
+    @Label("Compressed")
+    boolean compressed;
+
+    @Label("Account Hash")
+    long accountHash;
+
+    @Label("Item Count")
+    @Description("Items or offers in the payload")
+    int itemCount;
+}
@@ -0,0 +1,130 @@
+package com.oldschooldb;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leading + trailing edge debounce per container type.
+ *
+ * The first change for a container syncs immediately and opens a window. Changes
+ * that arrive while the window is open are coalesced into a single sync that runs
+ * when the window closes, which opens the next window. A window that closes with
+ * nothing pending ends the cycle, so the next change is a leading edge again.
+ */
+@Slf4j
+public class SyncScheduler {
+    private final ScheduledExecutorService timer;
+    private final Executor flushExecutor;
+    private final SyncMetrics metrics;
+    private final Map<ContainerType, Window> windows = new EnumMap<>(ContainerType.class);
+
+    private static class Window {
+        long intervalMs;
+        Runnable action;
+        boolean dirty;
+        ScheduledFuture<?> closing;
+    }
+
+    /**
+     * @param timer         schedules window closes
+     * @param flushExecutor runs trailing-edge syncs; should be the client thread since syncs capture containers
+     * @param metrics       counts requests folded into a pending trailing-edge sync
+     */
+    public SyncScheduler(ScheduledExecutorService timer, Executor flushExecutor, SyncMetrics metrics) {
+        this.timer = timer;
+        this.flushExecutor = flushExecutor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Requests a sync of {@code type}. Runs {@code action} right away if no window is open,
+     * otherwise defers it to the end of the current window.
+     */
+    public void request(ContainerType type, long intervalMs, Runnable action) {
+        synchronized (this) {
+            Window window = windows.get(type);
+            if (window != null) {
+                if (window.dirty) {
+                    metrics.recordCoalesced(type);
+                }
+                window.dirty = true;
+                window.action = action;
+                window.intervalMs = intervalMs;
+                return;
+            }
+
+            window = new Window();
+            window.intervalMs = intervalMs;
+            window.action = action;
+            windows.put(type, window);
+            open(type, window);
+        }
+        action.run();
+    }
+
+    /**
+     * Drops all open windows and any coalesced syncs still waiting in them.
+     */
+    public synchronized void cancelAll() {
+        for (Window window : windows.values()) {
+            if (window.closing != null) {
+                window.closing.cancel(false);
+            }
+        }
+        windows.clear();
+    }
+
+    /**
+     * Closes all open windows, running the coalesced syncs still waiting in them on the calling thread.
+     */
+    public void flushAll() {
+        List<Runnable> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Window window : windows.values()) {
+                if (window.closing != null) {
+                    window.closing.cancel(false);
+                }
+                if (window.dirty) {
+                    pending.add(window.action);
+                }
+            }
+            windows.clear();
+        }
+        if (!pending.isEmpty()) {
+            log.debug("Flushing {} coalesced syncs", pending.size());
+        }
+        for (Runnable action : pending) {
+            action.run();
+        }
+    }
+
+    private void open(ContainerType type, Window window) {
+        window.closing = timer.schedule(() -> close(type, window), window.intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void close(ContainerType type, Window window) {
+        Runnable action;
+        synchronized (this) {
+            if (windows.get(type) != window) {
+                return; // Cancelled
+            }
+            if (!window.dirty) {
+                windows.remove(type);
+                return;
+            }
+            window.dirty = false;
+            action = window.action;
+            open(type, window);
+        }
+        log.debug("Flushing coalesced {} sync", type);
+        flushExecutor.execute(action);
+    }
+}
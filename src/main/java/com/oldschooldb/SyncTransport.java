@@ -0,0 +1,24 @@
+package com.oldschooldb;
+
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.Item;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * How sync payloads reach the server: one request per update ({@link AuthService})
+ * or gathered into combined requests ({@link SyncBatcher}). Each update carries the
+ * {@code timestamp} its snapshot was captured at, which the server sees instead of the
+ * time it was sent, so a snapshot replayed from the outbox is not taken for current state.
+ */
+public interface SyncTransport {
+    CompletableFuture<BankSyncResult> sendBankData(Long accountHash, long timestamp, Item[] bankItems);
+
+    CompletableFuture<BankSyncResult> sendBankDelta(Long accountHash, long timestamp, long baseVersion, BankDelta delta);
+
+    CompletableFuture<Boolean> sendInventoryData(Long accountHash, long timestamp, Item[] inventoryItems);
+
+    CompletableFuture<Boolean> sendEquipmentData(Long accountHash, long timestamp, Item[] equipmentItems);
+
+    CompletableFuture<Boolean> sendGrandExchangeOffer(Long accountHash, long timestamp, int slot, GrandExchangeOffer offer);
+}
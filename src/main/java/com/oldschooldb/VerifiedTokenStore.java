@@ -0,0 +1,95 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Remembers the last successful token verification, so a restart within
+ * {@link #TTL_MS} can start syncing at once and re-verify in the background.
+ * Only a hash of the token is written, together with the server it was verified
+ * against and the payload format that server accepted.
+ */
+@Slf4j
+public class VerifiedTokenStore {
+    static final long TTL_MS = 12 * 60 * 60 * 1000L;
+
+    private final File file;
+    private final Gson gson;
+
+    public VerifiedTokenStore(File directory, Gson gson) {
+        this.file = new File(directory, "verified-token.json");
+        this.gson = gson;
+    }
+
+    /**
+     * Whether binary payloads were accepted, if {@code apiToken} was verified against
+     * {@code serverUrl} less than {@link #TTL_MS} ago; null if it has to be verified first.
+     */
+    public synchronized Boolean lookup(String serverUrl, String apiToken) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JsonObject json = gson.fromJson(reader, JsonObject.class);
+            long age = System.currentTimeMillis() - json.get("verified_at").getAsLong();
+            if (age < 0 || age > TTL_MS
+                || !serverUrl.equals(json.get("server").getAsString())
+                || !hash(apiToken).equals(json.get("token_sha256").getAsString())) {
+                return null;
+            }
+            return json.get("binary").getAsBoolean();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Discarding unreadable token verification {}", file, e);
+            return null;
+        }
+    }
+
+    public synchronized void put(String serverUrl, String apiToken, boolean binary) {
+        JsonObject json = new JsonObject();
+        json.addProperty("server", serverUrl);
+        json.addProperty("token_sha256", hash(apiToken));
+        json.addProperty("verified_at", System.currentTimeMillis());
+        json.addProperty("binary", binary);
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(json, writer);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to persist token verification", e);
+        }
+    }
+
+    public synchronized void invalidate() {
+        if (file.exists() && !file.delete()) {
+            log.warn("Failed to delete token verification {}", file);
+        }
+    }
+
+    private static String hash(String apiToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiToken.trim().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JRE ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.oldschooldb;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Round-trips {@link ItemHistoryBlock}s and exercises the log, compaction and retention
+ * of an {@link ItemHistoryStore} on a temporary directory.
+ */
+public class ItemHistoryStoreTest
+{
+	private static final long ACCOUNT_HASH = -42L; // Stored as an unsigned directory name
+	private static final long NO_LIMIT = Long.MAX_VALUE;
+
+	@Test
+	public void blockRoundTripsAbsentItemsAndFallingQuantities() throws Exception
+	{
+		List<ItemHistoryBlock.Row> rows = Arrays.asList(
+			ItemHistoryBlock.Row.of(1_000, new int[]{995, 1_000_000, 4151, 1, 561, 300}),
+			ItemHistoryBlock.Row.of(1_500, new int[]{995, 400_000, 561, 200}),
+			ItemHistoryBlock.Row.of(1_501, new int[]{995, 400_000, 561, 100, 4151, 1}),
+			ItemHistoryBlock.Row.of(9_000, new int[]{995, Integer.MAX_VALUE, 561, 0, 0, 5}));
+
+		ItemHistoryBlock decoded = ItemHistoryBlock.decode(ItemHistoryBlock.of(rows).encode());
+
+		assertEquals(rows.size(), decoded.size());
+		for (int r = 0; r < rows.size(); r++)
+		{
+			ItemHistoryBlock.Row expected = rows.get(r);
+			ItemHistoryBlock.Row actual = decoded.row(r);
+			assertEquals(expected.timestamp, actual.timestamp);
+			assertArrayEquals(expected.ids, actual.ids);
+			assertArrayEquals(expected.quantities, actual.quantities);
+		}
+		assertArrayEquals(new int[]{1, 0, 1, 0}, decoded.column(4151));
+		assertArrayEquals(new int[]{300, 200, 100, 0}, decoded.column(561));
+		assertNull(decoded.column(0));
+	}
+
+	@Test
+	public void tornLogRecordIsDroppedAndTruncated() throws Exception
+	{
+		File directory = Files.createTempDirectory("oldschooldb-history").toFile();
+		try (ItemHistoryStore store = new ItemHistoryStore(directory, NO_LIMIT, NO_LIMIT))
+		{
+			store.append(ACCOUNT_HASH, ContainerType.BANK, 1_000, new int[]{995, 10});
+			store.append(ACCOUNT_HASH, ContainerType.BANK, 2_000, new int[]{995, 20});
+		}
+		File log = new File(directory, Long.toUnsignedString(ACCOUNT_HASH) + "/bank.log");
+		long valid = log.length();
+		try (RandomAccessFile file = new RandomAccessFile(log, "rw"))
+		{
+			// A record header promising more bytes than made it to disk
+			file.seek(valid);
+			file.writeInt(64);
+			file.writeInt(0);
+			file.write(new byte[]{1, 2, 3});
+		}
+
+		try (ItemHistoryStore store = new ItemHistoryStore(directory, NO_LIMIT, NO_LIMIT))
+		{
+			assertEquals(Integer.valueOf(20), store.stateAt(ACCOUNT_HASH, ContainerType.BANK, 5_000).get(995));
+			assertEquals(valid, log.length());
+			store.append(ACCOUNT_HASH, ContainerType.BANK, 3_000, new int[]{995, 30});
+		}
+
+		try (ItemHistoryStore store = new ItemHistoryStore(directory, NO_LIMIT, NO_LIMIT))
+		{
+			NavigableMap<Long, Integer> history = store.quantityHistory(ACCOUNT_HASH, ContainerType.BANK, 995, 0, 5_000);
+			assertEquals(3, history.size());
+			assertEquals(Integer.valueOf(30), history.get(3_000L));
+		}
+	}
+
+	@Test
+	public void compactionMergesSegmentsAndKeepsEveryRow() throws Exception
+	{
+		File directory = Files.createTempDirectory("oldschooldb-history").toFile();
+		long start = System.currentTimeMillis();
+		int snapshots = ItemHistoryStore.LOG_ROWS * 2 + 5;
+		try (ItemHistoryStore store = new ItemHistoryStore(directory, NO_LIMIT, NO_LIMIT))
+		{
+			for (int i = 0; i < snapshots; i++)
+			{
+				store.append(ACCOUNT_HASH, ContainerType.BANK, start + i * 10L, new int[]{995, i + 1});
+			}
+			assertEquals(2, segments(directory).length);
+
+			store.compact();
+
+			assertEquals(1, segments(directory).length);
+			assertEquals(snapshots, store.quantityHistory(ACCOUNT_HASH, ContainerType.BANK, 995, start, start + snapshots * 10L).size());
+			assertEquals(Integer.valueOf(1), store.stateAt(ACCOUNT_HASH, ContainerType.BANK, start - 1).get(995));
+			assertEquals(Integer.valueOf(71), store.stateAt(ACCOUNT_HASH, ContainerType.BANK, start + 705).get(995));
+			Map<Integer, Integer> change = store.netChange(ACCOUNT_HASH, ContainerType.BANK, start, start + 1_000_000);
+			assertEquals(Integer.valueOf(snapshots - 1), change.get(995));
+		}
+	}
+
+	@Test
+	public void compactionEvictsExpiredSegmentsAndKeepsRecentOnes() throws Exception
+	{
+		File directory = Files.createTempDirectory("oldschooldb-history").toFile();
+		long now = System.currentTimeMillis();
+		long old = now - TimeUnit.DAYS.toMillis(30);
+		try (ItemHistoryStore store = new ItemHistoryStore(directory, NO_LIMIT, TimeUnit.DAYS.toMillis(7)))
+		{
+			store.append(ACCOUNT_HASH, ContainerType.BANK, old, new int[]{995, 10});
+			store.append(ACCOUNT_HASH, ContainerType.INVENTORY, now, new int[]{4151, 1});
+
+			store.compact();
+
+			assertNull(store.stateAt(ACCOUNT_HASH, ContainerType.BANK, now));
+			Map<Integer, Integer> inventory = store.stateAt(ACCOUNT_HASH, ContainerType.INVENTORY, now);
+			assertNotNull(inventory);
+			assertEquals(Integer.valueOf(1), inventory.get(4151));
+			assertEquals(1, segments(directory).length);
+		}
+
+		try (ItemHistoryStore store = new ItemHistoryStore(directory, 0, NO_LIMIT))
+		{
+			store.compact();
+			assertEquals(0, segments(directory).length);
+			assertEquals(0, store.diskUsage());
+		}
+	}
+
+	@Test
+	public void snapshotsNotAfterTheLastOneAreIgnored() throws Exception
+	{
+		File directory = Files.createTempDirectory("oldschooldb-history").toFile();
+		try (ItemHistoryStore store = new ItemHistoryStore(directory, NO_LIMIT, NO_LIMIT))
+		{
+			for (int i = 0; i < ItemHistoryStore.LOG_ROWS; i++)
+			{
+				store.append(ACCOUNT_HASH, ContainerType.BANK, 1_000 + i, new int[]{995, i + 1});
+			}
+			assertEquals(1, segments(directory).length);
+
+			// The clock went back: a log starting at the segment's first timestamp would replace it
+			store.append(ACCOUNT_HASH, ContainerType.BANK, 1_000, new int[]{995, 500});
+			store.append(ACCOUNT_HASH, ContainerType.BANK, 1_000 + ItemHistoryStore.LOG_ROWS - 1, new int[]{995, 600});
+			store.append(ACCOUNT_HASH, ContainerType.BANK, 5_000, new int[]{995, 700});
+			store.compact();
+
+			assertEquals(1, segments(directory).length);
+			NavigableMap<Long, Integer> history = store.quantityHistory(ACCOUNT_HASH, ContainerType.BANK, 995, 0, 10_000);
+			assertEquals(ItemHistoryStore.LOG_ROWS + 1, history.size());
+			assertEquals(Integer.valueOf(1), history.get(1_000L));
+			assertEquals(Integer.valueOf(700), store.stateAt(ACCOUNT_HASH, ContainerType.BANK, 10_000).get(995));
+		}
+	}
+
+	private static File[] segments(File directory)
+	{
+		File[] files = new File(directory, Long.toUnsignedString(ACCOUNT_HASH)).listFiles((dir, name) -> name.endsWith(".seg"));
+		return files != null ? files : new File[0];
+	}
+}
@@ -0,0 +1,67 @@
+package com.oldschooldb;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs one {@link LoadTestDriver} session against a {@link MockBackend} and prints
+ * requests/min, bytes/min and staleness. Run with {@code ./gradlew loadTest}, e.g.
+ *
+ * <pre>
+ * ./gradlew loadTest --args="--pattern BOSSING --seconds 120 --latency 80 --jitter 200 --errors 0.05"
+ * </pre>
+ *
+ * Options: {@code --pattern} (SKILLING, BOSSING, FLIPPING), {@code --seconds}, {@code --tick-ms},
+ * {@code --interval-ms}, {@code --latency}, {@code --jitter}, {@code --errors} (0-1),
+ * {@code --rps} (0 for no limit), {@code --binary}, {@code --ws} (send over the sync channel). {@code --trace} replays a recorded session
+ * trace instead of a pattern, {@code --speed} times faster than it was recorded:
+ *
+ * <pre>
+ * ./gradlew loadTest --args="--trace ~/.runelite/oldschooldb/traces/trace-20260101-120000.bin --speed 10"
+ * </pre>
+ */
+public class LoadTest {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            boolean flag = i + 1 >= args.length || args[i + 1].startsWith("--");
+            options.put(args[i].substring(2), flag ? "true" : args[++i]);
+        }
+
+        LoadTestDriver.PlayPattern pattern = LoadTestDriver.PlayPattern.valueOf(options.getOrDefault("pattern", "SKILLING"));
+        long durationMs = Long.parseLong(options.getOrDefault("seconds", "60")) * 1000;
+        File dataDirectory = Files.createTempDirectory("oldschooldb-load").toFile();
+
+        try (MockBackend backend = new MockBackend()) {
+            backend.setLatencyMs(Long.parseLong(options.getOrDefault("latency", "0")));
+            backend.setLatencyJitterMs(Long.parseLong(options.getOrDefault("jitter", "0")));
+            backend.setErrorRate(Double.parseDouble(options.getOrDefault("errors", "0")));
+            backend.setRequestsPerSecond(Integer.parseInt(options.getOrDefault("rps", "0")));
+            backend.setBinarySupported(Boolean.parseBoolean(options.getOrDefault("binary", "false")));
+            boolean useChannel = Boolean.parseBoolean(options.getOrDefault("ws", "false"));
+            backend.setWebSocketSupported(useChannel);
+
+            LoadTestDriver driver = new LoadTestDriver(backend, dataDirectory);
+            driver.setTickMs(Long.parseLong(options.getOrDefault("tick-ms", "600")));
+            driver.setSyncIntervalMs(Long.parseLong(options.getOrDefault("interval-ms", "10000")));
+            driver.setUseChannel(useChannel);
+            try {
+                if (options.containsKey("trace")) {
+                    File trace = new File(options.get("trace"));
+                    double speed = Double.parseDouble(options.getOrDefault("speed", "1"));
+                    System.out.print(driver.replay(trace, speed, 30_000));
+                } else {
+                    System.out.print(driver.run(pattern, durationMs, 30_000));
+                }
+            } finally {
+                driver.close();
+            }
+        }
+        System.exit(0); // OkHttp keeps non-daemon threads alive for a while
+    }
+}
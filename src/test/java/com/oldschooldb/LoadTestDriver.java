@@ -0,0 +1,444 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.GameState;
+import net.runelite.api.GrandExchangeOfferState;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import okhttp3.OkHttpClient;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays synthetic container and Grand Exchange event streams through the sync stack
+ * against a {@link MockBackend}, the way {@link OldSchoolDBPlugin} wires it: events mark
+ * containers dirty in the same {@link ContainerSyncTracker}, game ticks capture them
+ * through the {@link SyncScheduler}, and snapshots go through the {@link SyncPipeline};
+ * GE events go through the {@link GrandExchangeTracker}.
+ *
+ * Every change bumps the quantity of a marker item (or the {@code spent} of a GE offer)
+ * to a sequence number, so the backend can tell which change it received and when.
+ * Staleness is the time from a change to the first delivery that includes it.
+ *
+ * {@link #replay} plays a trace recorded by {@link SessionRecorder} instead, at its
+ * recorded pace or faster; there are no markers then, so it reports traffic only.
+ */
+@Slf4j
+public class LoadTestDriver implements Closeable {
+    static final long ACCOUNT_HASH = 0x5f3759df12345678L;
+    static final int MARKER_ITEM_ID = 995; // Coins, in slot 0 of every container
+    private static final int GE_SLOTS = 8;
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum PlayPattern {
+        /** Inventory fills every other tick, a bank trip every minute, gear almost never changes. */
+        SKILLING(0.5, 0.005, 100, 10, 0),
+        /** Food and potions, frequent gear switches, bank trips between kills. */
+        BOSSING(0.3, 0.2, 200, 15, 0),
+        /** Mostly Grand Exchange offers being placed, filled and collected. */
+        FLIPPING(0.05, 0, 300, 10, 0.3),
+        /** Flipping from a bank booth: offers change while items go back and forth to the bank. */
+        MERCHANTING(0.3, 0, 20, 10, 0.3);
+
+        private final double inventoryChance;
+        private final double equipmentChance;
+        private final int bankTripEvery;
+        private final int bankTripTicks;
+        private final double grandExchangeChance;
+    }
+
+    private final MockBackend backend;
+    private final SyncMetrics metrics = new SyncMetrics();
+    private final SyncBudget budget = new SyncBudget();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledExecutorService clientThread = Executors.newSingleThreadScheduledExecutor();
+    private final SyncDispatcher dispatcher = new SyncDispatcher(metrics);
+    private final SyncScheduler scheduler = new SyncScheduler(timer, clientThread, metrics);
+    private final ContainerSyncTracker containerSync;
+    private final AuthService authService;
+    private final SyncChannel channel;
+    private final SyncPipeline pipeline;
+    private final GrandExchangeTracker geTracker;
+
+    private final Map<ContainerType, Item[]> containers = new EnumMap<>(ContainerType.class);
+    private final Map<Integer, GrandExchangeOfferSnapshot> offers = new HashMap<>();
+    private final Map<SyncKey, Deque<long[]>> undelivered = new HashMap<>();
+    private final Map<ContainerType, LatencyHistogram> staleness = new EnumMap<>(ContainerType.class);
+    private final Random random = new Random(42);
+    private long accountHash = ACCOUNT_HASH;
+    private int tick = 0;
+    private int sequence = 0;
+
+    /** Real time per game tick; 600ms in the game, less to compress a session. */
+    @Setter
+    private long tickMs = 600;
+    /** Sync interval for every container, as the interval settings would give it. */
+    @Setter
+    private long syncIntervalMs = 10_000;
+    @Setter
+    private int captureTickInterval = 2;
+    /** Send over the {@link SyncChannel}; the backend must have WebSocket support enabled. */
+    @Setter
+    private boolean useChannel = false;
+
+    public LoadTestDriver(MockBackend backend, File dataDirectory) {
+        this.backend = backend;
+        this.authService = new AuthService(new OkHttpClient(), backend.url(), dispatcher.executor(SyncLane.EXPEDITED),
+            dispatcher.executor(SyncLane.BULK), metrics, budget);
+        authService.setCompression(CompressionCodec.GZIP, 2048);
+        this.channel = new SyncChannel(authService, timer, metrics, budget);
+        this.pipeline = new SyncPipeline(dispatcher, authService, timer, dataDirectory, new Gson(), channel);
+        this.geTracker = new GrandExchangeTracker(timer, (key, offer) ->
+            pipeline.syncGrandExchangeOffer(key.getAccountHash(), key.getSlot(), offer), metrics, budget);
+        this.containerSync = new ContainerSyncTracker(scheduler, budget, metrics, type -> syncIntervalMs, this::sync);
+
+        containers.put(ContainerType.BANK, items(800));
+        containers.put(ContainerType.INVENTORY, items(28));
+        containers.put(ContainerType.EQUIPMENT, items(11));
+        for (ContainerType type : ContainerType.values()) {
+            staleness.put(type, new LatencyHistogram());
+        }
+        metrics.setLaneDepth(dispatcher::laneDepth);
+        backend.setListener(this::received);
+    }
+
+    /**
+     * Authenticates, plays {@code pattern} for {@code durationMs}, then waits up to
+     * {@code drainMs} for the backend to receive every change.
+     */
+    public Report run(PlayPattern pattern, long durationMs, long drainMs) throws Exception {
+        authenticate();
+        long start = System.nanoTime();
+        ScheduledFuture<?> ticks = clientThread.scheduleAtFixedRate(() -> gameTick(pattern), tickMs, tickMs,
+            TimeUnit.MILLISECONDS);
+        Thread.sleep(durationMs);
+        ticks.cancel(false);
+        clientThread.submit(() -> { }).get(); // Let a running tick finish
+        long played = System.nanoTime() - start;
+
+        geTracker.flushAll();
+        long deadline = System.currentTimeMillis() + drainMs;
+        while (undeliveredCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return new Report(pattern.name(), TimeUnit.NANOSECONDS.toMillis(played), backend, metrics, staleness,
+            sequence, undeliveredCount());
+    }
+
+    /**
+     * Authenticates and plays the events in {@code trace} on the client thread, {@code speed}
+     * times faster than they were recorded. Afterwards waits one sync interval for scheduled
+     * syncs to start, then up to {@code drainMs} for them to finish.
+     */
+    public Report replay(File trace, double speed, long drainMs) throws Exception {
+        authenticate();
+        int events = 0;
+        long start = System.nanoTime();
+        try (SessionTraceReader reader = new SessionTraceReader(trace)) {
+            SessionTraceReader.Event event;
+            while ((event = reader.next()) != null) {
+                long dueNanos = start + (long) (TimeUnit.MICROSECONDS.toNanos(event.getOffsetMicros()) / speed);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                SessionTraceReader.Event replayed = event;
+                clientThread.execute(() -> apply(replayed));
+                events++;
+            }
+        }
+        clientThread.submit(() -> { }).get();
+        long played = System.nanoTime() - start;
+
+        geTracker.flushAll();
+        Thread.sleep(syncIntervalMs);
+        dispatcher.drain(drainMs, TimeUnit.MILLISECONDS);
+        return new Report(trace.getName(), TimeUnit.NANOSECONDS.toMillis(played), backend, metrics, staleness,
+            events, 0);
+    }
+
+    @Override
+    public void close() {
+        scheduler.cancelAll();
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+        clientThread.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    private void authenticate() throws Exception {
+        if (authService.authenticateToken(MockBackend.TOKEN).get() != AuthResult.VERIFIED) {
+            throw new IllegalStateException("Mock backend refused the token");
+        }
+        if (useChannel) {
+            pipeline.setChannelEnabled(true);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!channel.isOpen() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            if (!channel.isOpen()) {
+                throw new IllegalStateException("Sync channel did not open");
+            }
+        }
+    }
+
+    /**
+     * What the plugin's event handlers do with one recorded event.
+     */
+    private void apply(SessionTraceReader.Event event) {
+        try {
+            switch (event.getKind()) {
+                case CONTAINER:
+                    ContainerType type = containerType(event.getContainerId());
+                    if (type != null) {
+                        containers.put(type, event.getItems());
+                        containerSync.markDirty(type);
+                    }
+                    break;
+                case GE_OFFER:
+                    geTracker.offer(accountHash, event.getSlot(), event.getOffer());
+                    break;
+                case ACCOUNT:
+                    accountHash = event.getAccountHash();
+                    break;
+                case GAME_STATE:
+                    if (event.getGameState().equals(GameState.LOGGING_IN.name())
+                        || event.getGameState().equals(GameState.HOPPING.name())) {
+                        geTracker.beginLogin();
+                    }
+                    break;
+                case GAME_TICK:
+                    containerSync.tick(++tick, captureTickInterval);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Replaying {} failed", event.getKind(), e);
+        }
+    }
+
+    private static ContainerType containerType(int containerId) {
+        if (containerId == InventoryID.BANK.getId()) {
+            return ContainerType.BANK;
+        } else if (containerId == InventoryID.INVENTORY.getId()) {
+            return ContainerType.INVENTORY;
+        } else if (containerId == InventoryID.EQUIPMENT.getId()) {
+            return ContainerType.EQUIPMENT;
+        }
+        return null;
+    }
+
+    private void gameTick(PlayPattern pattern) {
+        try {
+            tick++;
+            boolean atBank = tick % pattern.bankTripEvery < pattern.bankTripTicks;
+            if (atBank) {
+                change(ContainerType.BANK, 2);
+            }
+            if (atBank || random.nextDouble() < pattern.inventoryChance) {
+                change(ContainerType.INVENTORY, 3);
+            }
+            if (random.nextDouble() < pattern.equipmentChance) {
+                change(ContainerType.EQUIPMENT, 2);
+            }
+            if (random.nextDouble() < pattern.grandExchangeChance) {
+                changeOffer(random.nextInt(GE_SLOTS));
+            }
+            containerSync.tick(tick, captureTickInterval);
+        } catch (RuntimeException e) {
+            log.warn("Game tick failed", e);
+        }
+    }
+
+    /**
+     * What {@code OldSchoolDBPlugin.onItemContainerChanged} does: mark the container dirty.
+     */
+    private void change(ContainerType type, int slotsChanged) {
+        Item[] items = containers.get(type).clone();
+        for (int i = 0; i < slotsChanged; i++) {
+            int slot = 1 + random.nextInt(items.length - 1);
+            items[slot] = random.nextInt(4) == 0 ? new Item(-1, 0) : new Item(itemId(), 1 + random.nextInt(100));
+        }
+        items[0] = new Item(MARKER_ITEM_ID, record(SyncKey.of(ACCOUNT_HASH, type)));
+        containers.put(type, items);
+        containerSync.markDirty(type);
+    }
+
+    /**
+     * Places a new offer in an empty slot, or moves an existing one towards completion.
+     */
+    private void changeOffer(int slot) {
+        GrandExchangeOfferSnapshot current = offers.get(slot);
+        int spent = record(SyncKey.of(ACCOUNT_HASH, ContainerType.GRAND_EXCHANGE, slot));
+        GrandExchangeOfferSnapshot next;
+        if (current == null || current.getState() == GrandExchangeOfferState.BOUGHT) {
+            next = new GrandExchangeOfferSnapshot(1 + random.nextInt(25_000), 0, 100, 1 + random.nextInt(100_000),
+                spent, GrandExchangeOfferState.BUYING);
+        } else {
+            int sold = Math.min(current.getTotalQuantity(), current.getQuantitySold() + 1 + random.nextInt(40));
+            next = new GrandExchangeOfferSnapshot(current.getItemId(), sold, current.getTotalQuantity(), current.getPrice(),
+                spent, sold == current.getTotalQuantity() ? GrandExchangeOfferState.BOUGHT : GrandExchangeOfferState.BUYING);
+        }
+        offers.put(slot, next);
+        geTracker.offer(ACCOUNT_HASH, slot, next);
+    }
+
+    private void sync(ContainerType type) {
+        ItemSnapshot snapshot = ItemSnapshot.capture(container(containers.get(type)));
+        if (pipeline.isUnchanged(accountHash, type, snapshot)) {
+            metrics.recordDropped(type);
+            return;
+        }
+        pipeline.syncContainer(accountHash, type, snapshot);
+    }
+
+    private synchronized int record(SyncKey key) {
+        int seq = ++sequence;
+        undelivered.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(new long[]{seq, System.nanoTime()});
+        return seq;
+    }
+
+    private void received(long accountHash, ContainerType type, JsonObject section) {
+        long now = System.nanoTime();
+        SyncKey key;
+        long seq;
+        if (type == ContainerType.GRAND_EXCHANGE) {
+            key = SyncKey.of(accountHash, type, section.get("slot").getAsInt());
+            seq = section.get("spent").getAsLong();
+        } else {
+            key = SyncKey.of(accountHash, type);
+            seq = Math.max(marker(section.getAsJsonArray("items")),
+                Math.max(marker(section.getAsJsonArray("added")), marker(section.getAsJsonArray("changed"))));
+        }
+        synchronized (this) {
+            Deque<long[]> pending = undelivered.get(key);
+            while (pending != null && !pending.isEmpty() && pending.peekFirst()[0] <= seq) {
+                staleness.get(type).recordNanos(now - pending.pollFirst()[1]);
+            }
+        }
+    }
+
+    private synchronized int undeliveredCount() {
+        return undelivered.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    private static long marker(JsonArray items) {
+        if (items == null) {
+            return -1;
+        }
+        for (JsonElement item : items) {
+            JsonObject entry = item.getAsJsonObject();
+            if (entry.get("item_id").getAsInt() == MARKER_ITEM_ID) {
+                return entry.get("quantity").getAsLong();
+            }
+        }
+        return -1;
+    }
+
+    private Item[] items(int slots) {
+        Item[] items = new Item[slots];
+        items[0] = new Item(MARKER_ITEM_ID, 1);
+        for (int i = 1; i < slots; i++) {
+            items[i] = random.nextInt(10) == 0 ? new Item(-1, 0) : new Item(itemId(), 1 + random.nextInt(100));
+        }
+        return items;
+    }
+
+    private int itemId() {
+        int itemId = 1 + random.nextInt(25_000);
+        return itemId == MARKER_ITEM_ID ? itemId + 1 : itemId; // Only slot 0 holds the marker
+    }
+
+    private static ItemContainer container(Item[] items) {
+        return (ItemContainer) Proxy.newProxyInstance(ItemContainer.class.getClassLoader(),
+            new Class<?>[]{ItemContainer.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getItems":
+                        return items.clone();
+                    case "size":
+                        return items.length;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    /**
+     * Requests, bytes and staleness for one run, per minute of play.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Report {
+        private final String session; // Play pattern or trace file name
+        private final long playedMs;
+        private final MockBackend backend;
+        private final SyncMetrics metrics;
+        private final Map<ContainerType, LatencyHistogram> staleness;
+        private final int changes;
+        private final int undelivered;
+
+        public double requestsPerMinute() {
+            return backend.totalRequests() * 60_000.0 / playedMs;
+        }
+
+        public double bytesPerMinute() {
+            return backend.totalWireBytes() * 60_000.0 / playedMs;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%s: %d changes over %.1fs, %d undelivered%n",
+                session, changes, playedMs / 1000.0, undelivered));
+            out.append(String.format("  %.1f requests/min, %.1f KB/min sent%n", requestsPerMinute(), bytesPerMinute() / 1024));
+            for (Map.Entry<String, MockBackend.Counters> entry : backend.getEndpoints().entrySet()) {
+                MockBackend.Counters counters = entry.getValue();
+                out.append(String.format("  %-20s %6d requests %10d B %5d errors %5d throttled%n", entry.getKey(),
+                    counters.getRequests().get(), counters.getWireBytes().get(),
+                    counters.getErrors().get(), counters.getThrottled().get()));
+            }
+            for (Map.Entry<SyncLane, SyncMetrics.LaneStats> entry : metrics.getLanes().entrySet()) {
+                SyncMetrics.LaneStats stats = entry.getValue();
+                LatencyHistogram histogram = stats.getLatency();
+                if (histogram.count() == 0) {
+                    continue;
+                }
+                out.append(String.format("  lane %-10s      n=%-6d p50=%s p99=%s within %s: %.1f%%%n",
+                    entry.getKey().getLabel(), histogram.count(),
+                    OldSchoolDBPanel.formatMicros(histogram.percentileMicros(0.5)),
+                    OldSchoolDBPanel.formatMicros(histogram.percentileMicros(0.99)),
+                    OldSchoolDBPanel.formatMicros(entry.getKey().getSloMs() * 1000), stats.sloAttainment() * 100));
+            }
+            for (Map.Entry<ContainerType, LatencyHistogram> entry : staleness.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                if (histogram.count() == 0) {
+                    continue;
+                }
+                out.append(String.format("  staleness %-10s n=%-6d p50=%s p99=%s max=%s%n", entry.getKey().getPath(),
+                    histogram.count(), OldSchoolDBPanel.formatMicros(histogram.percentileMicros(0.5)),
+                    OldSchoolDBPanel.formatMicros(histogram.percentileMicros(0.99)),
+                    OldSchoolDBPanel.formatMicros(histogram.maxMicros())));
+            }
+            return out.toString();
+        }
+    }
+}
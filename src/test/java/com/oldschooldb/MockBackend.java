@@ -0,0 +1,512 @@
+package com.oldschooldb;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.Getter;
+import lombok.Setter;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+/**
+ * In-process stand-in for the OldSchoolDB backend on a {@link MockWebServer}. Answers
+ * every endpoint {@link AuthService} calls, with configurable latency, injected server
+ * errors and a request rate limit, and counts the requests and bytes it receives.
+ *
+ * Every accepted JSON section (a container snapshot, a bank delta, one GE offer) is also
+ * passed to the {@link Listener}, so a test can tell which state reached the server and when.
+ * Binary bodies are accepted and counted but not decoded.
+ *
+ * With {@link #setWebSocketSupported} on, {@code /api/plugin/ws} accepts the
+ * {@link SyncChannel} and acks each message after the configured latency. The error rate
+ * then drops the connection instead of answering, so unacked messages get retransmitted.
+ *
+ * With {@link #setChunkedUploadSupported} on, {@code bank/chunk} and {@code bank/commit} accept
+ * a {@link ChunkedBankUpload}: chunks are checked against their CRC-32 and held per snapshot
+ * id until the manifest commits them as one bank. Commits of a snapshot id that had a chunk
+ * fail are counted, so a test can tell the upload was resumed rather than restarted.
+ */
+public class MockBackend implements Closeable {
+    public static final String TOKEN = "test-token";
+
+    public interface Listener {
+        void received(long accountHash, ContainerType type, JsonObject section);
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final Gson gson = new Gson();
+    private final Map<String, Counters> endpoints = new ConcurrentHashMap<>();
+    private final Map<Long, Long> bankVersions = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, JsonObject>> bankChunks = new ConcurrentHashMap<>();
+    /** Chunks received again after the server had already accepted them. */
+    @Getter
+    private final AtomicLong duplicateChunks = new AtomicLong();
+    /** Snapshot ids that had a chunk answered with an injected error. */
+    private final Set<String> failedSnapshots = ConcurrentHashMap.newKeySet();
+    /** Snapshots committed under the same id after one of their chunks failed. */
+    @Getter
+    private final AtomicLong resumedSnapshots = new AtomicLong();
+    private final Deque<Long> recentRequests = new ArrayDeque<>();
+    private final ScheduledExecutorService acks = Executors.newSingleThreadScheduledExecutor();
+
+    /** Fixed delay before the response headers. */
+    @Setter
+    private volatile long latencyMs = 0;
+    /** Extra random delay on top of {@link #latencyMs}, uniform in [0, jitter]. */
+    @Setter
+    private volatile long latencyJitterMs = 0;
+    /** Extra delay per KB of request body, as on a slow uplink. */
+    @Setter
+    private volatile long latencyPerKbMs = 0;
+    /** Fraction of sync requests answered with a 503. */
+    @Setter
+    private volatile double errorRate = 0;
+    /** Sync requests allowed per second before answering 429; 0 for no limit. */
+    @Setter
+    private volatile int requestsPerSecond = 0;
+    /** Whether the handshake advertises binary payloads. */
+    @Setter
+    private volatile boolean binarySupported = false;
+    /** Whether {@code /api/plugin/ws} accepts a sync channel; answered with 404 otherwise. */
+    @Setter
+    private volatile boolean webSocketSupported = false;
+    /** Whether the handshake advertises chunked bank uploads. */
+    @Setter
+    private volatile boolean chunkedUploadSupported = false;
+    /** Returned as {@code limits} in the handshake, if set. */
+    @Setter
+    private volatile JsonObject limits;
+    /** Next {@code bank/chunk} requests to answer with a 503, on top of the error rate. */
+    private final AtomicInteger chunkFailures = new AtomicInteger();
+    @Setter
+    private volatile Listener listener = (accountHash, type, section) -> { };
+
+    @Getter
+    public static class Counters {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong wireBytes = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong throttled = new AtomicLong();
+    }
+
+    public MockBackend() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return delayed(handle(request), request.getBodySize());
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Answers the next {@code count} chunk uploads with a 503, so a test can count on a resumed upload.
+     */
+    public void failChunks(int count) {
+        chunkFailures.set(count);
+    }
+
+    /**
+     * Base URL to hand to {@link AuthService}, without a trailing slash.
+     */
+    public String url() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    /**
+     * Counters per endpoint path below {@code /api/}, sorted.
+     */
+    public Map<String, Counters> getEndpoints() {
+        return new TreeMap<>(endpoints);
+    }
+
+    public long totalRequests() {
+        return endpoints.values().stream().mapToLong(c -> c.requests.get()).sum();
+    }
+
+    public long totalWireBytes() {
+        return endpoints.values().stream().mapToLong(c -> c.wireBytes.get()).sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        acks.shutdownNow();
+        server.shutdown();
+    }
+
+    private MockResponse handle(RecordedRequest request) {
+        String path = request.getPath() == null ? "" : request.getPath();
+        Counters counters = endpoints.computeIfAbsent(path.replaceFirst("^/api/", ""), p -> new Counters());
+        counters.requests.incrementAndGet();
+        counters.wireBytes.addAndGet(request.getBodySize());
+
+        switch (path) {
+            case "/api/health":
+            case "/":
+                return new MockResponse();
+            case "/api/items/mappings":
+                return mappings(request);
+            case "/api/plugin/auth/test":
+                return authorized(request) ? handshake() : new MockResponse().setResponseCode(401);
+            case SyncChannel.PATH:
+                if (!webSocketSupported) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                return authorized(request)
+                    ? new MockResponse().withWebSocketUpgrade(new ChannelListener(counters))
+                    : new MockResponse().setResponseCode(401);
+            default:
+                break;
+        }
+
+        if (!path.startsWith("/api/plugin/") || !"POST".equals(request.getMethod())) {
+            return new MockResponse().setResponseCode(404);
+        }
+        if (!authorized(request)) {
+            return new MockResponse().setResponseCode(401);
+        }
+        if (isThrottled()) {
+            counters.throttled.incrementAndGet();
+            return new MockResponse().setResponseCode(429).setHeader("Retry-After", "1");
+        }
+        boolean chunk = path.equals("/api/plugin/bank/chunk");
+        if ((chunk && chunkFailures.getAndUpdate(n -> Math.max(n - 1, 0)) > 0)
+                || (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)) {
+            counters.errors.incrementAndGet();
+            if (chunk) {
+                failedChunk(request);
+            }
+            return new MockResponse().setResponseCode(503);
+        }
+
+        JsonObject body;
+        try {
+            body = json(request);
+        } catch (IOException | RuntimeException e) {
+            return new MockResponse().setResponseCode(400).setBody(String.valueOf(e.getMessage()));
+        }
+        return sync(path.substring("/api/plugin/".length()), body);
+    }
+
+    private MockResponse sync(String endpoint, JsonObject body) {
+        long accountHash = body == null ? 0 : body.get("account_hash").getAsLong();
+        switch (endpoint) {
+            case "bank/sync":
+                deliver(accountHash, ContainerType.BANK, body);
+                return ok(bankResult(accountHash, null));
+            case "bank/delta": {
+                JsonObject result = bankResult(accountHash, body);
+                if (result.get("status").getAsInt() == 200) {
+                    deliver(accountHash, ContainerType.BANK, body);
+                }
+                return new MockResponse().setResponseCode(result.get("status").getAsInt()).setBody(gson.toJson(result));
+            }
+            case "inventory/sync":
+                deliver(accountHash, ContainerType.INVENTORY, body);
+                return ok(new JsonObject());
+            case "equipment/sync":
+                deliver(accountHash, ContainerType.EQUIPMENT, body);
+                return ok(new JsonObject());
+            case "ge/sync":
+                deliver(accountHash, ContainerType.GRAND_EXCHANGE, body);
+                return ok(new JsonObject());
+            case "sync/batch":
+                return ok(batch(accountHash, body));
+            case "bank/chunk":
+                return chunkedUploadSupported ? bankChunk(body) : new MockResponse().setResponseCode(404);
+            case "bank/commit":
+                return chunkedUploadSupported ? bankCommit(accountHash, body) : new MockResponse().setResponseCode(404);
+            default:
+                return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    private JsonObject batch(long accountHash, JsonObject body) {
+        JsonObject results = new JsonObject();
+        if (body.has(SyncBatch.BANK)) {
+            deliver(accountHash, ContainerType.BANK, body.getAsJsonObject(SyncBatch.BANK));
+            results.add(SyncBatch.BANK, bankResult(accountHash, null));
+        }
+        if (body.has(SyncBatch.BANK_DELTA)) {
+            JsonObject delta = body.getAsJsonObject(SyncBatch.BANK_DELTA);
+            JsonObject result = bankResult(accountHash, delta);
+            if (result.get("status").getAsInt() == 200) {
+                deliver(accountHash, ContainerType.BANK, delta);
+            }
+            results.add(SyncBatch.BANK_DELTA, result);
+        }
+        if (body.has(SyncBatch.INVENTORY)) {
+            deliver(accountHash, ContainerType.INVENTORY, body.getAsJsonObject(SyncBatch.INVENTORY));
+            results.add(SyncBatch.INVENTORY, status(200));
+        }
+        if (body.has(SyncBatch.EQUIPMENT)) {
+            deliver(accountHash, ContainerType.EQUIPMENT, body.getAsJsonObject(SyncBatch.EQUIPMENT));
+            results.add(SyncBatch.EQUIPMENT, status(200));
+        }
+        if (body.has(SyncBatch.GRAND_EXCHANGE)) {
+            JsonObject offers = new JsonObject();
+            for (JsonElement offer : body.getAsJsonArray(SyncBatch.GRAND_EXCHANGE)) {
+                deliver(accountHash, ContainerType.GRAND_EXCHANGE, offer.getAsJsonObject());
+                offers.add(offer.getAsJsonObject().get("slot").getAsString(), status(200));
+            }
+            results.add(SyncBatch.GRAND_EXCHANGE, offers);
+        }
+        JsonObject response = new JsonObject();
+        response.add("results", results);
+        return response;
+    }
+
+    private MockResponse bankChunk(JsonObject chunk) {
+        if (checksum(chunk.getAsJsonArray("items")) != chunk.get("crc32").getAsLong()) {
+            return new MockResponse().setResponseCode(422);
+        }
+        Map<Integer, JsonObject> chunks = bankChunks.computeIfAbsent(chunk.get("snapshot_id").getAsString(),
+            id -> new ConcurrentHashMap<>());
+        if (chunks.put(chunk.get("index").getAsInt(), chunk) != null) {
+            duplicateChunks.incrementAndGet();
+        }
+        return ok(new JsonObject());
+    }
+
+    private void failedChunk(RecordedRequest request) {
+        try {
+            JsonObject chunk = json(request);
+            if (chunk != null) {
+                failedSnapshots.add(chunk.get("snapshot_id").getAsString());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not a chunk the client could resume either
+        }
+    }
+
+    /**
+     * Applies a committed snapshot as one full bank, or answers 409 with the chunks it lacks.
+     */
+    private MockResponse bankCommit(long accountHash, JsonObject manifest) {
+        Map<Integer, JsonObject> chunks = bankChunks.get(manifest.get("snapshot_id").getAsString());
+        JsonArray missing = new JsonArray();
+        JsonArray items = new JsonArray();
+        for (JsonElement element : manifest.getAsJsonArray("chunks")) {
+            JsonObject entry = element.getAsJsonObject();
+            JsonObject chunk = chunks == null ? null : chunks.get(entry.get("index").getAsInt());
+            if (chunk == null || chunk.get("crc32").getAsLong() != entry.get("crc32").getAsLong()) {
+                missing.add(entry.get("index"));
+            } else {
+                items.addAll(chunk.getAsJsonArray("items"));
+            }
+        }
+        if (missing.size() > 0) {
+            JsonObject result = status(409);
+            result.add("missing", missing);
+            return new MockResponse().setResponseCode(409).setBody(gson.toJson(result));
+        }
+        String snapshotId = manifest.get("snapshot_id").getAsString();
+        bankChunks.remove(snapshotId);
+        if (failedSnapshots.remove(snapshotId)) {
+            resumedSnapshots.incrementAndGet();
+        }
+        JsonObject bank = new JsonObject();
+        bank.add("items", items);
+        deliver(accountHash, ContainerType.BANK, bank);
+        return ok(bankResult(accountHash, null));
+    }
+
+    private static long checksum(JsonArray items) {
+        CRC32 crc = new CRC32();
+        ByteBuffer entry = ByteBuffer.allocate(8);
+        for (JsonElement element : items) {
+            JsonObject item = element.getAsJsonObject();
+            entry.clear();
+            entry.putInt(item.get("item_id").getAsInt()).putInt(item.get("quantity").getAsInt());
+            crc.update(entry.array());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Accepts a full bank ({@code delta} null) or a delta against the current version.
+     */
+    private JsonObject bankResult(long accountHash, JsonObject delta) {
+        synchronized (bankVersions) {
+            long current = bankVersions.getOrDefault(accountHash, 0L);
+            if (delta != null && delta.get("base_version").getAsLong() != current) {
+                return status(409);
+            }
+            bankVersions.put(accountHash, current + 1);
+            JsonObject result = status(200);
+            result.addProperty("version", current + 1);
+            return result;
+        }
+    }
+
+    private void deliver(long accountHash, ContainerType type, JsonObject section) {
+        if (section != null) {
+            listener.received(accountHash, type, section);
+        }
+    }
+
+    private MockResponse handshake() {
+        JsonObject user = new JsonObject();
+        user.addProperty("email", "load-test@example.com");
+        JsonObject token = new JsonObject();
+        token.addProperty("name", "load-test");
+        JsonArray formats = new JsonArray();
+        formats.add("json");
+        if (binarySupported) {
+            formats.add(BinaryPayloadWriter.FORMAT);
+        }
+        JsonObject capabilities = new JsonObject();
+        capabilities.add("sync_formats", formats);
+        capabilities.addProperty("chunked_bank_upload", chunkedUploadSupported);
+
+        JsonObject response = new JsonObject();
+        response.add("user", user);
+        response.add("token", token);
+        response.add("capabilities", capabilities);
+        if (limits != null) {
+            response.add("limits", limits);
+        }
+        return ok(response);
+    }
+
+    private MockResponse mappings(RecordedRequest request) {
+        String etag = "\"mappings-1\"";
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            return new MockResponse().setResponseCode(304);
+        }
+        JsonArray items = new JsonArray();
+        JsonObject coins = new JsonObject();
+        coins.addProperty("id", 995);
+        coins.addProperty("name", "Coins");
+        coins.addProperty("price", 1);
+        items.add(coins);
+        return new MockResponse().setHeader("ETag", etag).setBody(gson.toJson(items));
+    }
+
+    private boolean isThrottled() {
+        if (requestsPerSecond <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        synchronized (recentRequests) {
+            while (!recentRequests.isEmpty() && now - recentRequests.peekFirst() > TimeUnit.SECONDS.toNanos(1)) {
+                recentRequests.pollFirst();
+            }
+            if (recentRequests.size() >= requestsPerSecond) {
+                return true;
+            }
+            recentRequests.addLast(now);
+            return false;
+        }
+    }
+
+    private static boolean authorized(RecordedRequest request) {
+        return ("Bearer " + TOKEN).equals(request.getHeader("Authorization"));
+    }
+
+    private JsonObject json(RecordedRequest request) throws IOException {
+        String contentType = request.getHeader("Content-Type");
+        if (contentType == null || !contentType.startsWith("application/json")) {
+            return null; // Binary payload: counted, not decoded
+        }
+        Buffer body = request.getBody().clone();
+        String encoding = request.getHeader("Content-Encoding");
+        String text;
+        if ("gzip".equals(encoding)) {
+            text = Okio.buffer(new GzipSource(body)).readString(StandardCharsets.UTF_8);
+        } else if ("deflate".equals(encoding)) {
+            text = Okio.buffer(new InflaterSource(body, new Inflater())).readString(StandardCharsets.UTF_8);
+        } else {
+            text = body.readString(StandardCharsets.UTF_8);
+        }
+        return gson.fromJson(text, JsonObject.class);
+    }
+
+    private MockResponse ok(JsonObject body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(gson.toJson(body));
+    }
+
+    private MockResponse delayed(MockResponse response, long bodyBytes) {
+        long delay = delayMs(bodyBytes);
+        return delay > 0 ? response.setHeadersDelay(delay, TimeUnit.MILLISECONDS) : response;
+    }
+
+    private long delayMs(long bodyBytes) {
+        return latencyMs + (latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMs + 1) : 0)
+            + latencyPerKbMs * Math.max(0, bodyBytes) / 1024;
+    }
+
+    /**
+     * Server side of one {@link SyncChannel} connection: applies each message like a batch
+     * request and acks it with that batch's results.
+     */
+    private class ChannelListener extends WebSocketListener {
+        private final Counters counters;
+
+        ChannelListener(Counters counters) {
+            this.counters = counters;
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+            counters.requests.incrementAndGet();
+            counters.wireBytes.addAndGet(bytes);
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                counters.errors.incrementAndGet();
+                webSocket.close(1011, "injected error"); // The message is never applied or acked
+                return;
+            }
+            JsonObject message = gson.fromJson(text, JsonObject.class);
+            JsonObject ack = batch(message.get("account_hash").getAsLong(), message);
+            ack.add("ack", message.get("seq"));
+            acks.schedule(() -> webSocket.send(gson.toJson(ack)), delayMs(bytes), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            // Client went away; nothing to clean up
+        }
+    }
+
+    private static JsonObject status(int status) {
+        JsonObject result = new JsonObject();
+        result.addProperty("status", status);
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.oldschooldb;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recovers an {@link Outbox} from a temporary directory after clean shutdowns and torn writes.
+ */
+public class OutboxTest
+{
+	private static final long ACCOUNT_HASH = 42L;
+	private static final SyncKey BANK = SyncKey.of(ACCOUNT_HASH, ContainerType.BANK);
+	private static final SyncKey INVENTORY = SyncKey.of(ACCOUNT_HASH, ContainerType.INVENTORY);
+	private static final SyncKey OFFER = SyncKey.of(ACCOUNT_HASH, ContainerType.GRAND_EXCHANGE, 3);
+	private static final SyncKey EQUIPMENT = SyncKey.of(ACCOUNT_HASH, ContainerType.EQUIPMENT);
+
+	@Test
+	public void tornRecordIsDroppedAndAcksSurviveReopening() throws Exception
+	{
+		File directory = Files.createTempDirectory("oldschooldb-outbox").toFile();
+		long lastSequence;
+		try (Outbox outbox = new Outbox(directory))
+		{
+			outbox.append(BANK, 1_000, new int[]{995, 10});
+			OutboxEntry inventory = outbox.append(INVENTORY, 1_100, new int[]{4151, 1});
+			lastSequence = outbox.append(OFFER, 1_200, new int[]{1, 560, 100, 250}).getSequence();
+			outbox.ack(inventory);
+			outbox.append(EQUIPMENT, 1_300, new int[]{1163, 1});
+		}
+
+		// The equipment entry only made it to disk in part
+		File[] segments = segments(directory);
+		assertEquals(1, segments.length);
+		try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw"))
+		{
+			file.setLength(file.length() - 5);
+		}
+
+		try (Outbox outbox = new Outbox(directory))
+		{
+			List<OutboxEntry> pending = outbox.pending();
+			assertEquals(2, pending.size());
+			assertEquals(BANK, pending.get(0).getKey());
+			assertEquals(1_000, pending.get(0).getTimestamp());
+			assertArrayEquals(new int[]{995, 10}, pending.get(0).getData());
+			assertEquals(OFFER, pending.get(1).getKey());
+			assertEquals(lastSequence, pending.get(1).getSequence());
+			assertArrayEquals(new int[]{1, 560, 100, 250}, pending.get(1).getData());
+
+			// Recovery compacted the damaged segment away, so this append is readable again
+			assertEquals(1, segments(directory).length);
+			assertTrue(outbox.append(EQUIPMENT, 1_400, new int[]{1163, 1}).getSequence() > lastSequence);
+			outbox.ack(pending.get(0));
+		}
+
+		try (Outbox outbox = new Outbox(directory))
+		{
+			List<OutboxEntry> pending = outbox.pending();
+			assertEquals(2, pending.size());
+			assertEquals(OFFER, pending.get(0).getKey());
+			assertEquals(EQUIPMENT, pending.get(1).getKey());
+			assertEquals(1_400, pending.get(1).getTimestamp());
+		}
+	}
+
+	@Test
+	public void ackOfAnOlderSnapshotKeepsTheNewerOnePending() throws Exception
+	{
+		File directory = Files.createTempDirectory("oldschooldb-outbox").toFile();
+		try (Outbox outbox = new Outbox(directory))
+		{
+			OutboxEntry older = outbox.append(BANK, 1_000, new int[]{995, 10});
+			outbox.append(BANK, 2_000, new int[]{995, 20});
+			outbox.ack(older);
+			assertEquals(1, outbox.pending().size());
+		}
+
+		try (Outbox outbox = new Outbox(directory))
+		{
+			List<OutboxEntry> pending = outbox.pending();
+			assertEquals(1, pending.size());
+			assertEquals(2_000, pending.get(0).getTimestamp());
+			assertArrayEquals(new int[]{995, 20}, pending.get(0).getData());
+
+			outbox.ack(pending.get(0));
+			assertTrue(outbox.isEmpty());
+		}
+
+		try (Outbox outbox = new Outbox(directory))
+		{
+			assertTrue(outbox.isEmpty());
+		}
+	}
+
+	private static File[] segments(File directory)
+	{
+		File[] files = directory.listFiles((dir, name) -> name.startsWith("outbox-") && name.endsWith(".log"));
+		return files != null ? files : new File[0];
+	}
+}
@@ -0,0 +1,75 @@
+package com.oldschooldb;
+
+import java.io.File;
+import java.nio.file.Files;
+import net.runelite.api.GameState;
+import net.runelite.api.GrandExchangeOfferState;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records a short session with {@link SessionRecorder}, reads it back and replays it
+ * against a {@link MockBackend}.
+ */
+public class SessionTraceTest
+{
+	private static final long ACCOUNT_HASH = 1234567890123L;
+
+	@Test
+	public void recordedSessionReadsBackAndReplays() throws Exception
+	{
+		File dataDirectory = Files.createTempDirectory("oldschooldb-trace").toFile();
+		File trace = new File(dataDirectory, "traces/trace.bin");
+		Item[] inventory = {new Item(995, 1000), new Item(-1, 0), new Item(4151, 1)};
+
+		SessionRecorder recorder = new SessionRecorder(trace, Runnable::run);
+		recorder.gameStateChanged(GameState.LOGGING_IN);
+		recorder.accountHashChanged(ACCOUNT_HASH);
+		recorder.containerChanged(InventoryID.INVENTORY.getId(), inventory);
+		recorder.offerChanged(2, new GrandExchangeOfferSnapshot(4151, 1, 1, 1_500_000, 1_480_000,
+			GrandExchangeOfferState.BOUGHT));
+		recorder.gameTick();
+		recorder.close();
+
+		try (SessionTraceReader reader = new SessionTraceReader(trace))
+		{
+			assertEquals("LOGGING_IN", reader.next().getGameState());
+			assertEquals(ACCOUNT_HASH, reader.next().getAccountHash());
+			SessionTraceReader.Event container = reader.next();
+			assertEquals(InventoryID.INVENTORY.getId(), container.getContainerId());
+			assertEquals(3, container.getItems().length);
+			assertEquals(-1, container.getItems()[1].getId());
+			assertEquals(4151, container.getItems()[2].getId());
+			SessionTraceReader.Event offer = reader.next();
+			assertEquals(2, offer.getSlot());
+			assertEquals(1_480_000, offer.getOffer().getSpent());
+			assertEquals(GrandExchangeOfferState.BOUGHT, offer.getOffer().getState());
+			assertEquals(SessionTraceReader.Kind.GAME_TICK, reader.next().getKind());
+			assertNull(reader.next());
+		}
+
+		try (MockBackend backend = new MockBackend())
+		{
+			LoadTestDriver driver = new LoadTestDriver(backend, dataDirectory);
+			driver.setSyncIntervalMs(100);
+			driver.setCaptureTickInterval(1);
+			try
+			{
+				driver.replay(trace, 1, 10_000);
+			}
+			finally
+			{
+				driver.close();
+			}
+			assertTrue("inventory should be synced", backend.getEndpoints().keySet().stream()
+				.anyMatch(endpoint -> endpoint.equals("plugin/inventory/sync") || endpoint.equals("plugin/sync/batch")));
+			assertTrue("GE offer should be synced", backend.getEndpoints().keySet().stream()
+				.anyMatch(endpoint -> endpoint.equals("plugin/ge/sync") || endpoint.equals("plugin/sync/batch")));
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.oldschooldb;
+
+import com.google.gson.JsonObject;
+import java.io.File;
+import java.nio.file.Files;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Short, time-compressed {@link LoadTestDriver} sessions that fail the build if changes
+ * stop reaching the server or coalescing stops working. Longer sessions run with
+ * {@code ./gradlew loadTest}.
+ */
+@Slf4j
+public class SyncLoadTest
+{
+	private static final long TICK_MS = 20;
+	private static final long INTERVAL_MS = 300;
+	private static final long PLAY_MS = 1500;
+	private static final long DRAIN_MS = 10_000;
+	// A short run sends only a dozen or so offers, so leave room for one stalled by a GC pause or a busy CI box
+	private static final double MIN_GE_ATTAINMENT = 0.9;
+
+	private MockBackend backend;
+	private LoadTestDriver driver;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		backend = new MockBackend();
+		File dataDirectory = Files.createTempDirectory("oldschooldb-load").toFile();
+		driver = new LoadTestDriver(backend, dataDirectory);
+		driver.setTickMs(TICK_MS);
+		driver.setSyncIntervalMs(INTERVAL_MS);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		driver.close();
+		backend.close();
+	}
+
+	@Test
+	public void skillingDeliversEveryChangeInFewerRequests() throws Exception
+	{
+		LoadTestDriver.Report report = driver.run(LoadTestDriver.PlayPattern.SKILLING, PLAY_MS, DRAIN_MS);
+		log.info("{}", report);
+
+		assertEquals("undelivered changes", 0, report.getUndelivered());
+		assertTrue("changes should be coalesced into fewer requests",
+			backend.totalRequests() < report.getChanges());
+	}
+
+	@Test
+	public void flippingDeliversEveryOffer() throws Exception
+	{
+		LoadTestDriver.Report report = driver.run(LoadTestDriver.PlayPattern.FLIPPING, PLAY_MS, DRAIN_MS);
+		log.info("{}", report);
+
+		assertEquals("undelivered changes", 0, report.getUndelivered());
+	}
+
+	@Test
+	public void bossingSurvivesSlowAndFailingServer() throws Exception
+	{
+		backend.setLatencyMs(20);
+		backend.setLatencyJitterMs(80);
+		backend.setErrorRate(0.1);
+
+		LoadTestDriver.Report report = driver.run(LoadTestDriver.PlayPattern.BOSSING, PLAY_MS, DRAIN_MS);
+		log.info("{}", report);
+
+		assertEquals("undelivered changes", 0, report.getUndelivered());
+	}
+
+	@Test
+	public void channelRetransmitsAfterDroppedConnections() throws Exception
+	{
+		backend.setWebSocketSupported(true);
+		backend.setLatencyMs(20);
+		backend.setErrorRate(0.05);
+		driver.setUseChannel(true);
+
+		LoadTestDriver.Report report = driver.run(LoadTestDriver.PlayPattern.BOSSING, PLAY_MS, DRAIN_MS);
+		log.info("{}", report);
+
+		assertEquals("undelivered changes", 0, report.getUndelivered());
+		assertTrue("syncs should go over the channel",
+			backend.getEndpoints().get("plugin/ws").getRequests().get() > 1);
+	}
+
+	@Test
+	public void grandExchangeMeetsItsTargetBehindBankUploads() throws Exception
+	{
+		backend.setLatencyMs(20);
+		backend.setLatencyPerKbMs(150);
+
+		LoadTestDriver.Report report = driver.run(LoadTestDriver.PlayPattern.MERCHANTING, PLAY_MS, DRAIN_MS);
+		log.info("{}", report);
+
+		assertEquals("undelivered changes", 0, report.getUndelivered());
+		SyncMetrics.LaneStats expedited = report.getMetrics().getLanes().get(SyncLane.EXPEDITED);
+		assertTrue("GE offers should be sent", expedited.getLatency().count() > 0);
+		assertTrue("GE offers within their latency target: " + expedited.sloAttainment(),
+			expedited.sloAttainment() >= MIN_GE_ATTAINMENT);
+		assertTrue("GE offers should typically take well under their latency target",
+			expedited.getLatency().percentileMicros(0.5) < SyncLane.EXPEDITED.getSloMs() * 1000 / 2);
+	}
+
+	@Test
+	public void largeBankResumesChunkedUploadWithoutResendingChunks() throws Exception
+	{
+		JsonObject bank = new JsonObject();
+		bank.addProperty("max_payload_bytes", 4096);
+		JsonObject limits = new JsonObject();
+		limits.add("bank", bank);
+		backend.setLimits(limits);
+		backend.setChunkedUploadSupported(true);
+		backend.setErrorRate(0.1);
+		backend.failChunks(1);
+
+		LoadTestDriver.Report report = driver.run(LoadTestDriver.PlayPattern.SKILLING, PLAY_MS, DRAIN_MS);
+		log.info("{}", report);
+
+		assertEquals("undelivered changes", 0, report.getUndelivered());
+		assertTrue("the first bank should be committed from chunks",
+			backend.getEndpoints().get("plugin/bank/commit").getRequests().get() > 0);
+		assertEquals("chunks accepted twice", 0, backend.getDuplicateChunks().get());
+		assertTrue("a snapshot should be committed under its id after a chunk failed",
+			backend.getResumedSnapshots().get() > 0);
+	}
+}